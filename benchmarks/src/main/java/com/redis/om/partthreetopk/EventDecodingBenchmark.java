@@ -0,0 +1,55 @@
+package com.redis.om.partthreetopk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning raw Jetstream frames into English post texts: full {@link Event} binding against the streaming decoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventDecodingBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JetstreamEventDecoder decoder = new JetstreamEventDecoder();
+    private List<String> frames;
+
+    @Setup
+    public void setUp() {
+        frames = JetstreamSamples.lines();
+    }
+
+    @Benchmark
+    public void objectMapperBinding(Blackhole blackhole) throws IOException {
+        for (String frame : frames) {
+            Event event = objectMapper.readValue(frame, Event.class);
+            if (event.commit == null || event.commit.record == null || event.commit.record.text == null) {
+                continue;
+            }
+            if (event.commit.record.langs != null && !event.commit.record.langs.contains("en")) {
+                continue;
+            }
+            blackhole.consume("at://" + event.did + "/app.bsky.feed.post/" + event.commit.rkey);
+            blackhole.consume(event.commit.record.text);
+        }
+    }
+
+    @Benchmark
+    public void streamingDecoder(Blackhole blackhole) throws IOException {
+        for (String frame : frames) {
+            decoder.decode(frame, post -> {
+                blackhole.consume(post.uri());
+                blackhole.consume(post.text());
+            });
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.redis.om.partthreetopk;
+
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.RedisOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * In-memory stand-in for {@link RedisService} so the ingest hot paths can be benchmarked without a network.
+ * Keys and sets are kept in maps. Pipelines run against a real Jedis {@link Pipeline} whose connection encodes every
+ * command into the RESP protocol and records it instead of sending it, so building and serializing the writes is
+ * measured and only the network round trip and the server are left out. Replies are empty.
+ */
+class InMemoryRedisService extends RedisService {
+
+    private final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+    private final AtomicLong pipelines = new AtomicLong();
+    private final Map<String, LongAdder> commands = new ConcurrentHashMap<>();
+    private final LongAdder bytesSent = new LongAdder();
+    private final ThreadLocal<RecordingConnection> connections = ThreadLocal.withInitial(RecordingConnection::new);
+
+    InMemoryRedisService() {
+        super(null, null, null, null);
+    }
+
+    long pipelineCount() {
+        return pipelines.get();
+    }
+
+    // Commands received so far by name, e.g. CMS.INCRBY
+    Map<String, Long> commandCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        commands.forEach((command, count) -> counts.put(command, count.sum()));
+        return counts;
+    }
+
+    long bytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return keys.contains(key) || sets.containsKey(key);
+    }
+
+    @Override
+    public void expire(String key, long ttlSeconds) {
+    }
+
+    @Override
+    public void pipelined(Consumer<Pipeline> commands) {
+        pipelines.incrementAndGet();
+        // Like a pooled connection, a thread reuses its connection and output buffer
+        try (Pipeline pipeline = new Pipeline(connections.get())) {
+            commands.accept(pipeline);
+            pipeline.sync();
+        }
+    }
+
+    @Override
+    public void sAdd(String key, String... value) {
+        sets.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).addAll(Set.of(value));
+    }
+
+    @Override
+    public Set<String> sMembers(String key) {
+        return new HashSet<>(sets.getOrDefault(key, Set.of()));
+    }
+
+    @Override
+    public void createCms(String key, int width, int depth) {
+        keys.add(key);
+    }
+
+    @Override
+    public void createCms(String key, int width, int depth, long ttlSeconds) {
+        keys.add(key);
+    }
+
+    @Override
+    public void createBloomFilter(String key, int expectedItems, double falsePositiveRate) {
+        keys.add(key);
+    }
+
+    @Override
+    public void addMultiToBloomFilter(String key, String... items) {
+        sAdd(key, items);
+    }
+
+    @Override
+    public boolean isInBloomFilter(String key, String item) {
+        return sets.getOrDefault(key, Set.of()).contains(item);
+    }
+
+    // Encodes commands like a socket connection would, into a stream that only counts the bytes
+    private class RecordingConnection extends Connection {
+        private final RedisOutputStream out = new RedisOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytesSent.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytesSent.add(len);
+            }
+        });
+
+        @Override
+        public void sendCommand(CommandArguments args) {
+            Protocol.sendCommand(out, args);
+            String name = new String(args.getCommand().getRaw(), StandardCharsets.UTF_8);
+            commands.computeIfAbsent(name, command -> new LongAdder()).increment();
+        }
+
+        @Override
+        public List<Object> getMany(int count) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return Collections.nCopies(count, null);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.redis.om.partthreetopk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the Jetstream fixture used by the benchmarks: newline-delimited events as sent by the firehose.
+ * The bundled {@code jetstream-sample.jsonl} can be replaced by a real capture with {@code -Djetstream.sample=<file>}.
+ */
+final class JetstreamSamples {
+
+    private JetstreamSamples() {
+    }
+
+    static List<String> lines() {
+        String override = System.getProperty("jetstream.sample");
+        try (InputStream in = override != null
+                ? Files.newInputStream(Path.of(override))
+                : JetstreamSamples.class.getResourceAsStream("/jetstream-sample.jsonl")) {
+            if (in == null) {
+                throw new IllegalStateException("jetstream-sample.jsonl not found on the classpath");
+            }
+            List<String> lines = new ArrayList<>();
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isBlank()) lines.add(line);
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<String> postTexts() {
+        return posts().stream().map(JetstreamEventDecoder.Post::text).toList();
+    }
+
+    static List<JetstreamEventDecoder.Post> posts() {
+        List<JetstreamEventDecoder.Post> posts = new ArrayList<>();
+        JetstreamEventDecoder decoder = new JetstreamEventDecoder();
+        try {
+            for (String line : lines()) {
+                decoder.decode(line, posts::add);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return posts;
+    }
+}
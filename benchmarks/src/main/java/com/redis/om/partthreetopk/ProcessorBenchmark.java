@@ -0,0 +1,80 @@
+package com.redis.om.partthreetopk;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JetstreamProcessor} against an in-memory {@link RedisService}: the whole per-post path
+ * (tokenizing, stopwords, interning, n-grams, batching) and the n-gram counting over interned word IDs on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessorBenchmark {
+
+    private List<JetstreamEventDecoder.Post> posts;
+    private List<int[]> tokenizedTexts;
+    private NgramExtractor ngramExtractor;
+    private JetstreamProcessor processor;
+    private InMemoryRedisService redisService;
+
+    @Setup
+    public void setUp() {
+        redisService = new InMemoryRedisService();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        KeyRegistry keyRegistry = new KeyRegistry(redisService, 7_200);
+        StopwordFilter stopwordFilter = new StopwordFilter(new DefaultResourceLoader(), redisService, keyRegistry, false);
+        EventClock eventClock = new EventClock(10);
+        MetricsBatcher metricsBatcher = new MetricsBatcher(redisService,
+                new LocalCmsAggregator(redisService, keyRegistry, eventClock, false, 5_000, 1_000, 5, meterRegistry),
+                new HeavyHitterTracker(redisService, keyRegistry, eventClock, 5_000, 1_000, meterRegistry), keyRegistry,
+                new SlidingWindow(10, 60, 30, 180, 120), eventClock, 500, 10_000, 86_400, meterRegistry);
+        ngramExtractor = new NgramExtractor(stopwordFilter, 2, false, false, meterRegistry);
+        processor = new JetstreamProcessor(ngramExtractor, metricsBatcher, 1_000_000, meterRegistry);
+
+        posts = JetstreamSamples.posts();
+        tokenizedTexts = new ArrayList<>();
+        Tokenizer tokenizer = new Tokenizer();
+        TermDictionary dictionary = processor.dictionary();
+        for (JetstreamEventDecoder.Post post : posts) {
+            List<Integer> words = new ArrayList<>();
+            tokenizer.tokenize(post.text(), token -> {
+                if (!stopwordFilter.contains(token)) words.add(dictionary.intern(token));
+            });
+            tokenizedTexts.add(words.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    @Benchmark
+    public void process() {
+        long eventMillis = System.currentTimeMillis();
+        for (JetstreamEventDecoder.Post post : posts) {
+            processor.process(post.text(), post.mentions(), eventMillis);
+        }
+    }
+
+    @Benchmark
+    public void countNgrams(Blackhole blackhole) {
+        TermDictionary dictionary = processor.dictionary();
+        for (int[] words : tokenizedTexts) {
+            TermCounts termCounts = new TermCounts(dictionary, words.length * 2);
+            blackhole.consume(ngramExtractor.countNgrams(words, words.length, termCounts));
+        }
+    }
+
+    @TearDown
+    public void reportRedisWrites() {
+        System.out.printf("%nRedis writes: %d pipelines, %d bytes, %s%n",
+                redisService.pipelineCount(), redisService.bytesSent(), redisService.commandCounts());
+    }
+}
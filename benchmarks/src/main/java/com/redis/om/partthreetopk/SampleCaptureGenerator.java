@@ -0,0 +1,325 @@
+package com.redis.om.partthreetopk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes {@code jetstream-sample.jsonl}, a capture in the firehose format read by {@link FileReplayEventSource}.
+ * Checking in a recording of the live firehose would publish other people's posts, so the fixture is generated
+ * with a fixed seed instead, shaped like a {@code wantedCollections=app.bsky.feed.post} subscription:
+ * <ul>
+ *   <li>every post text is distinct, with Zipf-distributed words over a head of common words and stopwords and a
+ *       long tail of rare words, so interning and dedup see a growing vocabulary and no repeated posts;</li>
+ *   <li>mention, tag and link facets with the UTF-8 byte offsets of their text, replies, emoji and line breaks;</li>
+ *   <li>non-English posts, deletes, identity and account events, and a few events replayed after a reconnect.</li>
+ * </ul>
+ * Run with {@code java -cp benchmarks/target/benchmarks.jar com.redis.om.partthreetopk.SampleCaptureGenerator
+ * [file] [events]}.
+ */
+public final class SampleCaptureGenerator {
+
+    private static final long SEED = 20250101L;
+    private static final long START_TIME_US = 1_735_689_600_000_000L;
+    private static final String BASE32 = "abcdefghijklmnopqrstuvwxyz234567";
+
+    private static final String[] FUNCTION_WORDS = ("the to a i and of is in it that you for this my on be with just "
+            + "so but have are not was me at all like if can they what about we do your one from get out up how "
+            + "more when now will been there he she who an or no its really too would still some them our time "
+            + "here going today").split(" ");
+    private static final String[] COMMON_WORDS = ("people good new love day think know great want back first "
+            + "thanks right make world work year feel thing week need look last bluesky post read game night "
+            + "life music book movie news best free happy morning coffee weekend friends art photo video city "
+            + "home team season show story please watch play trump election vote court police government "
+            + "president climate science data open source code release project rust java python redis cloud ai "
+            + "model paper research school kids family dog cat bird garden rain snow sun weather beautiful "
+            + "amazing terrible funny sad tired excited birthday congrats update thread link stream live "
+            + "album song tour concert ticket football soccer basketball hockey baseball match goal win lost "
+            + "score fans results senate congress bill policy tax economy market stock price inflation "
+            + "job hiring remote startup feature bug fix deploy server database query cache latency "
+            + "throughput benchmark cooking recipe dinner lunch breakfast pizza tea wine beer holiday travel "
+            + "flight train trip beach mountain hike sunset moon stars space nasa launch rocket mars").split(" ");
+    private static final String[] TAGS = ("art photography bluesky news politics music books science tech "
+            + "gamedev writing dogs cats nature caturday nowplaying football uspol ai opensource java").split(" ");
+    private static final String[] EMOJI = {"😂", "❤️", "🔥", "🙏", "✨", "😭", "👀", "🎉", "☀️", "🦋", "👍", "💯"};
+    private static final String[] SYLLABLES = ("ka ri to mo na shi lu ve an el or un tri bra qui zen dor fal "
+            + "gim hex jo kel mar nor pix quo ras sto tul vin wex yal zor ph th ck ly ing er ed").split(" ");
+    private static final String[] OTHER_LANGS = {"ja", "pt", "de", "es", "fr", "ko"};
+
+    private final Random random = new Random(SEED);
+    private final String[] vocabulary;
+    private final double[] vocabularyCdf;
+    private final double[] tagCdf = zipfCdf(TAGS.length, 1.0);
+    private final String[] authors;
+    private final double[] authorCdf;
+    private final List<String> recentEvents = new ArrayList<>();
+    private long timeUs = START_TIME_US;
+
+    private SampleCaptureGenerator() {
+        List<String> words = new ArrayList<>(List.of(COMMON_WORDS));
+        // Long tail: names, typos and rare words seen a handful of times
+        while (words.size() < 30_000) {
+            words.add(pseudoWord());
+        }
+        this.vocabulary = words.toArray(new String[0]);
+        this.vocabularyCdf = zipfCdf(vocabulary.length, 1.05);
+        this.authors = new String[2_000];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = "did:plc:" + base32(24);
+        }
+        this.authorCdf = zipfCdf(authors.length, 0.9);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Path.of(args.length > 0 ? args[0] : "benchmarks/src/main/resources/jetstream-sample.jsonl");
+        int events = args.length > 1 ? Integer.parseInt(args[1]) : 2_500;
+        SampleCaptureGenerator generator = new SampleCaptureGenerator();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < events; i++) {
+                writer.write(generator.nextEvent());
+                writer.write('\n');
+            }
+        }
+    }
+
+    private String nextEvent() {
+        // About 50 post events per second
+        timeUs += 1 + (long) (-Math.log(1 - random.nextDouble()) * 20_000);
+        double kind = random.nextDouble();
+        String event;
+        if (kind < 0.01 && !recentEvents.isEmpty()) {
+            // Replayed after a reconnect: the same event again, with a later time_us
+            String replayed = recentEvents.get(random.nextInt(recentEvents.size()));
+            event = replayed.replaceFirst("\"time_us\":\\d+", "\"time_us\":" + timeUs);
+        } else if (kind < 0.02) {
+            event = identityOrAccount();
+        } else if (kind < 0.10) {
+            event = delete();
+        } else {
+            event = create();
+        }
+        recentEvents.add(event);
+        if (recentEvents.size() > 200) recentEvents.remove(0);
+        return event;
+    }
+
+    private String create() {
+        String did = authors[sample(authorCdf)];
+        String rkey = tid();
+        double lang = random.nextDouble();
+        String langs;
+        Text text;
+        if (lang < 0.62) {
+            langs = random.nextDouble() < 0.05 ? "[\"en\",\"es\"]" : "[\"en\"]";
+            text = englishText();
+        } else if (lang < 0.66) {
+            // Posts without langs are decoded as English
+            langs = null;
+            text = englishText();
+        } else {
+            String other = OTHER_LANGS[random.nextInt(OTHER_LANGS.length)];
+            langs = "[\"" + other + "\"]";
+            text = other.equals("ja") || other.equals("ko") ? cjkText(other) : foreignText();
+        }
+
+        StringBuilder record = new StringBuilder("{\"$type\":\"app.bsky.feed.post\",\"createdAt\":\"")
+                .append(Instant.ofEpochMilli(timeUs / 1000 - random.nextInt(2_000)))
+                .append('"');
+        if (!text.facets.isEmpty()) {
+            record.append(",\"facets\":[").append(String.join(",", text.facets)).append(']');
+        }
+        if (langs != null) {
+            record.append(",\"langs\":").append(langs);
+        }
+        if (random.nextDouble() < 0.3) {
+            String parent = "at://" + authors[sample(authorCdf)] + "/app.bsky.feed.post/" + tid();
+            record.append(",\"reply\":{\"parent\":{\"cid\":\"").append(cid()).append("\",\"uri\":\"").append(parent)
+                    .append("\"},\"root\":{\"cid\":\"").append(cid()).append("\",\"uri\":\"").append(parent)
+                    .append("\"}}");
+        }
+        record.append(",\"text\":\"").append(escape(text.text.toString())).append("\"}");
+
+        return "{\"did\":\"" + did + "\",\"time_us\":" + timeUs + ",\"kind\":\"commit\",\"commit\":{\"rev\":\"" + tid()
+                + "\",\"operation\":\"create\",\"collection\":\"app.bsky.feed.post\",\"rkey\":\"" + rkey
+                + "\",\"record\":" + record + ",\"cid\":\"" + cid() + "\"}}";
+    }
+
+    private String delete() {
+        return "{\"did\":\"" + authors[sample(authorCdf)] + "\",\"time_us\":" + timeUs
+                + ",\"kind\":\"commit\",\"commit\":{\"rev\":\"" + tid()
+                + "\",\"operation\":\"delete\",\"collection\":\"app.bsky.feed.post\",\"rkey\":\"" + tid() + "\"}}";
+    }
+
+    private String identityOrAccount() {
+        String did = authors[sample(authorCdf)];
+        String time = Instant.ofEpochMilli(timeUs / 1000).toString();
+        if (random.nextBoolean()) {
+            return "{\"did\":\"" + did + "\",\"time_us\":" + timeUs + ",\"kind\":\"identity\",\"identity\":{\"did\":\""
+                    + did + "\",\"handle\":\"" + pseudoWord() + ".bsky.social\",\"seq\":" + random.nextInt(1 << 30)
+                    + ",\"time\":\"" + time + "\"}}";
+        }
+        return "{\"did\":\"" + did + "\",\"time_us\":" + timeUs + ",\"kind\":\"account\",\"account\":{\"active\":true,"
+                + "\"did\":\"" + did + "\",\"seq\":" + random.nextInt(1 << 30) + ",\"time\":\"" + time + "\"}}";
+    }
+
+    private Text englishText() {
+        Text text = new Text();
+        if (random.nextDouble() < 0.15) {
+            text.mention(authors[sample(authorCdf)], "@" + pseudoWord() + ".bsky.social");
+            text.append(" ");
+        }
+        // Posts are limited to 300 characters
+        int words = 3 + (int) (-Math.log(1 - random.nextDouble()) * 14);
+        for (int i = 0; i < words && text.text.length() < 220; i++) {
+            if (i > 0) text.append(random.nextDouble() < 0.03 ? "\n\n" : " ");
+            double pick = random.nextDouble();
+            if (pick < 0.42) {
+                text.append(FUNCTION_WORDS[(int) (Math.pow(random.nextDouble(), 2) * FUNCTION_WORDS.length)]);
+            } else if (pick < 0.44) {
+                text.append(String.valueOf(random.nextInt(2_030)));
+            } else {
+                String word = vocabulary[sample(vocabularyCdf)];
+                text.append(i == 0 || random.nextDouble() < 0.08 ? capitalize(word) : word);
+            }
+            if (random.nextDouble() < 0.07) text.append(random.nextBoolean() ? "," : ".");
+        }
+        text.append(random.nextDouble() < 0.5 ? "." : random.nextBoolean() ? "!" : "?");
+        if (random.nextDouble() < 0.12) {
+            text.append(" ").mention(authors[sample(authorCdf)], "@" + pseudoWord() + ".bsky.social");
+        }
+        if (random.nextDouble() < 0.2) {
+            text.append(" ").append(EMOJI[random.nextInt(EMOJI.length)]);
+        }
+        while (random.nextDouble() < 0.18) {
+            text.append(" ").tag(TAGS[sample(tagCdf)]);
+        }
+        if (random.nextDouble() < 0.1) {
+            String path = base32(8);
+            text.append(" ").link("https://example.com/" + path, "example.com/" + path);
+        }
+        return text;
+    }
+
+    private Text foreignText() {
+        Text text = new Text();
+        int words = 3 + random.nextInt(25);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) text.append(" ");
+            text.append(pseudoWord());
+        }
+        return text.append(".");
+    }
+
+    private Text cjkText(String lang) {
+        Text text = new Text();
+        int chars = 5 + random.nextInt(60);
+        for (int i = 0; i < chars; i++) {
+            char c;
+            if (lang.equals("ko")) {
+                c = random.nextDouble() < 0.2 ? ' ' : (char) (0xAC00 + random.nextInt(11_172));
+            } else {
+                c = (char) (random.nextDouble() < 0.6 ? 0x3041 + random.nextInt(83) : 0x4E00 + random.nextInt(2_000));
+            }
+            text.append(String.valueOf(c));
+        }
+        return text.append(lang.equals("ko") ? "." : "。");
+    }
+
+    private String pseudoWord() {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private String tid() {
+        // Sortable by time like a real TID, with a random clock ID
+        StringBuilder tid = new StringBuilder();
+        long value = (timeUs << 10) | random.nextInt(1 << 10);
+        for (int i = 0; i < 13; i++) {
+            tid.insert(0, BASE32.charAt((int) (value & 31)));
+            value >>>= 5;
+        }
+        return tid.toString();
+    }
+
+    private String cid() {
+        return "bafyrei" + base32(52);
+    }
+
+    private String base32(int length) {
+        StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            value.append(BASE32.charAt(random.nextInt(32)));
+        }
+        return value.toString();
+    }
+
+    private int sample(double[] cdf) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    private static double[] zipfCdf(int size, double exponent) {
+        double[] cdf = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cdf[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cdf[rank] /= sum;
+        }
+        return cdf;
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Post text with its facets, whose indexes are UTF-8 byte offsets
+    private static class Text {
+        final StringBuilder text = new StringBuilder();
+        final List<String> facets = new ArrayList<>();
+        int bytes;
+
+        Text append(String part) {
+            text.append(part);
+            bytes += part.getBytes(StandardCharsets.UTF_8).length;
+            return this;
+        }
+
+        Text mention(String did, String handle) {
+            return facet(handle, "{\"$type\":\"app.bsky.richtext.facet#mention\",\"did\":\"" + did + "\"}");
+        }
+
+        Text tag(String tag) {
+            return facet("#" + tag, "{\"$type\":\"app.bsky.richtext.facet#tag\",\"tag\":\"" + tag + "\"}");
+        }
+
+        Text link(String uri, String display) {
+            return facet(display, "{\"$type\":\"app.bsky.richtext.facet#link\",\"uri\":\"" + uri + "\"}");
+        }
+
+        private Text facet(String part, String feature) {
+            int start = bytes;
+            append(part);
+            facets.add("{\"$type\":\"app.bsky.richtext.facet\",\"features\":[" + feature + "],\"index\":{\"byteEnd\":"
+                    + bytes + ",\"byteStart\":" + start + "}}");
+            return this;
+        }
+    }
+}
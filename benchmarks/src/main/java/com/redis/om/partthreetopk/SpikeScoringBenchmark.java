@@ -0,0 +1,58 @@
+package com.redis.om.partthreetopk;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring one {@link SpikeDetector} batch: spike scores and TopK increments from the CMS counts of every
+ * {@link SlidingWindow} slot (24 with the default 10s slots, 60s recent and 180s baseline windows).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpikeScoringBenchmark {
+
+    @Param({"10000"})
+    public int terms;
+
+    private final SlidingWindow window = new SlidingWindow(10, 60, 30, 180, 120);
+    private String[] items;
+    private List<List<Long>> counts;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        items = new String[terms];
+        for (int i = 0; i < terms; i++) {
+            items[i] = "term-" + i;
+        }
+        counts = new ArrayList<>();
+        for (int slot = 0; slot < window.slotCount(); slot++) {
+            List<Long> slotCounts = new ArrayList<>(terms);
+            for (int i = 0; i < terms; i++) {
+                // Zipf-like: a few frequent terms, a long tail of rare ones
+                slotCounts.add((long) (200.0 / (1 + random.nextInt(terms))));
+            }
+            counts.add(slotCounts);
+        }
+    }
+
+    @Benchmark
+    public void score(Blackhole blackhole) {
+        Map<String, Double> spikeScores = new HashMap<>();
+        Map<String, Long> topKIncrements = new HashMap<>();
+        SpikeDetector.score(items, counts, window, spikeScores, topKIncrements);
+        blackhole.consume(spikeScores);
+        blackhole.consume(topKIncrements);
+    }
+}
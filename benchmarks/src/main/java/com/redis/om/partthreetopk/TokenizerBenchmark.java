@@ -0,0 +1,49 @@
+package com.redis.om.partthreetopk;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cleaning and splitting the text of every sample post: the former regex pipeline against {@link Tokenizer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    private List<String> texts;
+    private Tokenizer tokenizer;
+
+    @Setup
+    public void setUp() {
+        texts = JetstreamSamples.postTexts();
+        tokenizer = new Tokenizer();
+    }
+
+    @Benchmark
+    public void regexCleanWord(Blackhole blackhole) {
+        for (String text : texts) {
+            Arrays.stream(text.split("\\s+"))
+                    .map(word -> word.replaceAll("(?<!^)#|[\\p{Punct}\\p{S}&&[^#]]", "")
+                            .replaceAll("^\\d+$", "")
+                            .toLowerCase()
+                            .trim())
+                    .filter(w -> !w.isEmpty())
+                    .forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void tokenizer(Blackhole blackhole) {
+        for (String text : texts) {
+            tokenizer.tokenize(text, blackhole::consume);
+        }
+    }
+}
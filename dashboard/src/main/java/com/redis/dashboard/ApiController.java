@@ -2,7 +2,9 @@ package com.redis.dashboard;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import redis.clients.jedis.resps.Tuple;
 
 import java.util.*;
@@ -13,51 +15,41 @@ import java.util.stream.Collectors;
 public class ApiController {
 
     private final static Logger logger = LoggerFactory.getLogger(ApiController.class);
+    private static final int MAX_LIMIT = 1000;
     private final RedisService redisService;
+    private final DashboardUpdates dashboardUpdates;
 
-    public ApiController(RedisService redisService) {
+    public ApiController(RedisService redisService, DashboardUpdates dashboardUpdates) {
         this.redisService = redisService;
+        this.dashboardUpdates = dashboardUpdates;
     }
 
     @GetMapping("/keys")
     public Map<String, String> getKeysByPrefix(@RequestParam String prefix) {
-        Set<String> keys = redisService.getKeysByPrefix(prefix);
-        return keys.stream()
-                .map(key -> Map.entry(key, redisService.getKeyMemorySize(key)))
-                .sorted(Map.Entry.<String, Long>comparingByKey().reversed())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> formatSize(entry.getValue()),
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+        return dashboardUpdates.keysByPrefix(prefix);
     }
 
-    private String formatSize(long bytes) {
-        if (bytes >= 1_048_576) {
-            return String.format("%.2f MB", bytes / 1_048_576.0);
-        } else if (bytes >= 1024) {
-            return String.format("%.2f KB", bytes / 1024.0);
-        } else {
-            return bytes + " B";
-        }
+    // Server-sent events with key list deltas and TopK changes, see DashboardUpdates
+    @GetMapping(path = "/updates", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter updates() {
+        return dashboardUpdates.subscribe();
     }
 
     @GetMapping("/data")
-    public Object getDataForKey(@RequestParam String key, @RequestParam String type) {
+    public Object getDataForKey(@RequestParam String key, @RequestParam String type,
+                                @RequestParam(defaultValue = "100") int limit) {
+        limit = Math.max(1, Math.min(limit, MAX_LIMIT));
         switch (type) {
             case "cms":
-                logger.info("Requested key: {}, type: {}", key, type);
-                List<String> words = redisService.sMembers("words-set").stream().toList();
-                return redisService.cmsQuery(key, words).entrySet().stream()
-                        .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                        .limit(100)
-                        .collect(Collectors.toMap(
-                                Map.Entry::getKey,
-                                Map.Entry::getValue,
-                                (e1, e2) -> e1,
-                                LinkedHashMap::new
-                        ));
+                logger.info("Requested key: {}, type: {}, limit: {}", key, type, limit);
+                // The bucket's ZSET already ranks its terms, so only the top candidates are looked up in the CMS
+                String bucket = key.substring(key.indexOf(':') + 1);
+                List<String> candidates = topTerms("words-bucket-zset:" + bucket, limit);
+                if (candidates.isEmpty()) {
+                    // The minute is still open, its ZSET is only written once it closes
+                    candidates = topTerms("words-bucket-zset-open:" + bucket, limit);
+                }
+                return redisService.cmsQuery(key, candidates);
 
             case "bf":
                 return null;
@@ -69,9 +61,7 @@ public class ApiController {
                 return redisService.sMembers(key).stream().limit(1000).collect(Collectors.toList());
 
             case "zset":
-                return redisService.zRangeWithScores(key).stream()
-                        .sorted(Comparator.comparingDouble(Tuple::getScore).reversed()) // sort by score descending
-                        .limit(100)
+                return redisService.zRevRangeWithScores(key, limit).stream()
                         .collect(Collectors.toMap(
                                 Tuple::getElement,
                                 Tuple::getScore,
@@ -84,6 +74,12 @@ public class ApiController {
         }
     }
 
+    private List<String> topTerms(String zsetKey, int limit) {
+        return redisService.zRevRangeWithScores(zsetKey, limit).stream()
+                .map(Tuple::getElement)
+                .toList();
+    }
+
     @GetMapping("/bloom/check")
     public Map<String, Boolean> checkBloomFilter(@RequestParam String key, @RequestParam String item) {
         logger.info("Checking if item '{}' exists in Bloom Filter '{}'", item, key);
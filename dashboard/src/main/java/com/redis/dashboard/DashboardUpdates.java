@@ -0,0 +1,169 @@
+package com.redis.dashboard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the dashboard views once per tick and pushes what changed to every connected browser over SSE,
+ * so Redis load does not grow with the number of open tabs. Key lists are sent as deltas (keys added, keys
+ * whose size changed, keys removed), the latest spiking TopK whenever its entries change.
+ * Nothing is read from Redis while nobody is connected.
+ */
+@Service
+public class DashboardUpdates {
+
+    private final static Logger logger = LoggerFactory.getLogger(DashboardUpdates.class);
+    // The key lists shown by script.js. "*-bf" covers stopwords-bf and the message-dedup-bf:<slice> filters,
+    // "*-set" covers stopwords-set, message-dedup-set:<slice> and words-set:<minute>
+    static final List<String> KEY_VIEWS = List.of(
+            "words-bucket-cms:", "words-bucket-zset:", "*-bf", "*-set", "spiking-topk:", "spiking-zset:");
+    private static final String TOPK_VIEW = "spiking-topk:";
+
+    private final RedisService redisService;
+    private final int keysLimit;
+    private final long intervalMillis;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final Map<String, Map<String, String>> keySnapshots = new ConcurrentHashMap<>();
+
+    private volatile long snapshotTime;
+    private volatile String topKKey;
+    private volatile Map<String, Long> topKItems = Map.of();
+
+    public DashboardUpdates(RedisService redisService,
+                            @Value("${dashboard.keys.limit:500}") int keysLimit,
+                            @Value("${dashboard.push.interval-ms:5000}") long intervalMillis) {
+        this.redisService = redisService;
+        this.keysLimit = keysLimit;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(error -> emitters.remove(emitter));
+
+        // A new client starts from the last computed state, then receives deltas like everyone else
+        boolean fresh = isFresh();
+        try {
+            for (String view : KEY_VIEWS) {
+                Map<String, String> keys = fresh ? keySnapshots.getOrDefault(view, Map.of()) : keysByPrefix(view);
+                emitter.send(SseEmitter.event().name("keys").data(new KeysDelta(view, true, keys, List.of())));
+            }
+            if (topKKey != null) {
+                emitter.send(SseEmitter.event().name("topk").data(new TopKUpdate(topKKey, topKItems)));
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    /**
+     * Keys with their formatted memory size, newest first. Served from the last tick while clients are connected.
+     */
+    public Map<String, String> keysByPrefix(String prefix) {
+        if (isFresh() && keySnapshots.containsKey(prefix)) {
+            return keySnapshots.get(prefix);
+        }
+        return loadKeys(prefix);
+    }
+
+    private Map<String, String> loadKeys(String prefix) {
+        Set<String> keys = redisService.getKeysByPrefix(prefix, keysLimit);
+        return redisService.getKeyMemorySizes(keys).entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByKey().reversed())
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        entry -> formatSize(entry.getValue()),
+                        (e1, e2) -> e1,
+                        LinkedHashMap::new
+                ));
+    }
+
+    @Scheduled(fixedDelayString = "${dashboard.push.interval-ms:5000}")
+    public void tick() {
+        if (emitters.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (String view : KEY_VIEWS) {
+                Map<String, String> current = loadKeys(view);
+                Map<String, String> previous = keySnapshots.put(view, current);
+                KeysDelta delta = KeysDelta.between(view, previous == null ? Map.of() : previous, current);
+                if (delta.hasChanges()) {
+                    broadcast("keys", delta);
+                }
+            }
+            snapshotTime = System.currentTimeMillis();
+
+            String latestTopK = keySnapshots.getOrDefault(TOPK_VIEW, Map.of()).keySet().stream().findFirst().orElse(null);
+            if (latestTopK != null) {
+                Map<String, Long> items = redisService.topkList(latestTopK);
+                if (!latestTopK.equals(topKKey) || !items.equals(topKItems)) {
+                    topKKey = latestTopK;
+                    topKItems = items;
+                    broadcast("topk", new TopKUpdate(latestTopK, items));
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to compute dashboard update: {}", e.getMessage());
+        }
+    }
+
+    private boolean isFresh() {
+        return System.currentTimeMillis() - snapshotTime < intervalMillis * 2;
+    }
+
+    private void broadcast(String name, Object data) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data));
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+
+    static String formatSize(long bytes) {
+        if (bytes >= 1_048_576) {
+            return String.format("%.2f MB", bytes / 1_048_576.0);
+        } else if (bytes >= 1024) {
+            return String.format("%.2f KB", bytes / 1024.0);
+        } else {
+            return bytes + " B";
+        }
+    }
+
+    // reset replaces the client's list with upserted; otherwise upserted and removed are applied to it
+    record KeysDelta(String prefix, boolean reset, Map<String, String> upserted, List<String> removed) {
+        static KeysDelta between(String prefix, Map<String, String> previous, Map<String, String> current) {
+            Map<String, String> upserted = new LinkedHashMap<>();
+            current.forEach((key, size) -> {
+                if (!size.equals(previous.get(key))) upserted.put(key, size);
+            });
+            List<String> removed = previous.keySet().stream().filter(key -> !current.containsKey(key)).toList();
+            return new KeysDelta(prefix, false, upserted, removed);
+        }
+
+        boolean hasChanges() {
+            return reset || !upserted.isEmpty() || !removed.isEmpty();
+        }
+    }
+
+    record TopKUpdate(String key, Map<String, Long> items) {
+    }
+}
@@ -6,55 +6,121 @@ import com.redis.om.spring.ops.pds.CountMinSketchOperations;
 import com.redis.om.spring.ops.pds.TopKOperations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import redis.clients.jedis.*;
 import redis.clients.jedis.exceptions.JedisDataException;
-import redis.clients.jedis.resps.ScanResult;
 import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
 import redis.clients.jedis.resps.Tuple;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class RedisService {
     private final static Logger logger = LoggerFactory.getLogger(RedisService.class);
+    // Written by the ingest side: one ZSET of keys per family, plus the set of families
+    private static final String KEY_INDEX_PREFIX = "key-index:";
+    private static final String KEY_INDEX_FAMILIES = KEY_INDEX_PREFIX + "families";
+    private static final int SCAN_COUNT = 1000;
     private final JedisPooled jedisPooled;
     private final CountMinSketchOperations<String> countMinSketchOperations;
     private final BloomOperations<String> bloomOperations;
     private final TopKOperations<String> topKOperations;
+    private final long memoryCacheTtlMillis;
+    private final long scanMaxKeys;
+    private final Map<String, CachedSize> memorySizes = new ConcurrentHashMap<>();
 
-    public RedisService(RedisModulesOperations<String> redisModulesOperations) {
+    public RedisService(RedisModulesOperations<String> redisModulesOperations,
+                        @Value("${dashboard.keys.memory-cache-ttl-ms:10000}") long memoryCacheTtlMillis,
+                        @Value("${dashboard.keys.scan-max-keys:100000}") long scanMaxKeys) {
         this.jedisPooled = new JedisPooled("localhost", 6379);
         this.countMinSketchOperations = redisModulesOperations.opsForCountMinSketch();
         this.bloomOperations = redisModulesOperations.opsForBloom();
         this.topKOperations = redisModulesOperations.opsForTopK();
-    }
+        this.memoryCacheTtlMillis = memoryCacheTtlMillis;
+        this.scanMaxKeys = scanMaxKeys;
+    }
+
+    // Memory sizes of several keys in one round trip, cached for a short while. Keys that no longer exist are left out.
+    public Map<String, Long> getKeyMemorySizes(Collection<String> keys) {
+        long now = System.currentTimeMillis();
+        Map<String, Long> sizes = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            CachedSize cached = memorySizes.get(key);
+            if (cached != null && cached.expiresAt() > now) {
+                if (cached.bytes() != null) sizes.put(key, cached.bytes());
+            } else {
+                missing.add(key);
+            }
+        }
 
-    // get key memory size
-    public Long getKeyMemorySize(String key) {
-        try {
-            return jedisPooled.memoryUsage(key);
-        } catch (JedisDataException e) {
-            logger.error("Error getting memory size for key: {}", key, e);
-            return 0L;
+        if (!missing.isEmpty()) {
+            Map<String, Response<Long>> responses = new HashMap<>();
+            try (Pipeline pipeline = jedisPooled.pipelined()) {
+                missing.forEach(key -> responses.put(key, pipeline.memoryUsage(key)));
+            }
+            responses.forEach((key, response) -> {
+                Long bytes = response.get();
+                memorySizes.put(key, new CachedSize(bytes, now + memoryCacheTtlMillis));
+                if (bytes != null) sizes.put(key, bytes);
+            });
+            memorySizes.values().removeIf(cached -> cached.expiresAt() <= now);
         }
+        return sizes;
+    }
+
+    /**
+     * Keys matching {@code prefix*} (where the prefix may itself contain {@code *}), read from the key index
+     * maintained by ingestion instead of scanning the keyspace. At most {@code limit} of the newest keys are read
+     * per family. Only part three maintains the index; when it has no key for the prefix, e.g. with part one or
+     * two running, a bounded SCAN is used instead.
+     */
+    public Set<String> getKeysByPrefix(String prefix, int limit) {
+        Pattern keyPattern = globPattern(prefix + "*");
+        // A family is relevant when its keys could match: it matches the pattern itself, or the
+        // pattern only narrows down the keys within the family
+        String literalPrefix = prefix.contains("*") ? prefix.substring(0, prefix.indexOf('*')) : prefix;
+        List<String> families = jedisPooled.smembers(KEY_INDEX_FAMILIES).stream()
+                .filter(family -> keyPattern.matcher(family).matches() || literalPrefix.startsWith(family))
+                .toList();
+
+        List<Response<List<String>>> responses = new ArrayList<>();
+        try (Pipeline pipeline = jedisPooled.pipelined()) {
+            families.forEach(family -> responses.add(pipeline.zrevrange(KEY_INDEX_PREFIX + family, 0, limit - 1)));
+        }
+        Set<String> keys = responses.stream()
+                .flatMap(response -> response.get().stream())
+                .filter(key -> keyPattern.matcher(key).matches())
+                .collect(Collectors.toSet());
+        return keys.isEmpty() ? scanKeys(prefix + "*", limit) : keys;
     }
 
-    public Set<String> getKeysByPrefix(String prefix) {
+    // Stops at limit keys found or after examining about scanMaxKeys keys, whichever comes first
+    private Set<String> scanKeys(String pattern, int limit) {
         Set<String> keys = new HashSet<>();
-        String cursor = "0";
-        ScanParams scanParams = new ScanParams().match(prefix + "*").count(100);
-
+        ScanParams scanParams = new ScanParams().match(pattern).count(SCAN_COUNT);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        long examined = 0;
         do {
             ScanResult<String> scanResult = jedisPooled.scan(cursor, scanParams);
             cursor = scanResult.getCursor();
             keys.addAll(scanResult.getResult());
-        } while (!cursor.equals("0"));
-
+            examined += SCAN_COUNT;
+        } while (!cursor.equals(ScanParams.SCAN_POINTER_START) && keys.size() < limit && examined < scanMaxKeys);
         return keys;
     }
 
+    private static Pattern globPattern(String glob) {
+        return Pattern.compile(Arrays.stream(glob.split("\\*", -1))
+                .map(Pattern::quote)
+                .collect(Collectors.joining(".*")));
+    }
+
     public boolean exists(String key) {
         return jedisPooled.exists(key);
     }
@@ -73,9 +139,9 @@ public class RedisService {
         jedisPooled.zincrby(key, score, member);
     }
 
-    // list all members with their scores
-    public List<Tuple> zRangeWithScores(String key) {
-        return jedisPooled.zrangeWithScores(key, 0, -1);
+    // highest scored members first
+    public List<Tuple> zRevRangeWithScores(String key, int limit) {
+        return jedisPooled.zrevrangeWithScores(key, 0, limit - 1);
     }
 
     // Count-Min Sketch methods
@@ -87,14 +153,6 @@ public class RedisService {
         countMinSketchOperations.cmsIncrBy(key, item, count);
     }
 
-    public Long cmsQuery(String key, String item) {
-        try {
-            return countMinSketchOperations.cmsQuery(key, item).stream().findFirst().orElse(0L);
-        } catch (JedisDataException e) {
-            return 0L;
-        }
-    }
-
     public Map<String, Long> cmsQuery(String key, List<String> items) {
         try {
             Map<String, Long> result = new LinkedHashMap<>();
@@ -149,4 +207,7 @@ public class RedisService {
     public Map<String, Long> topkList(String key) {
         return topKOperations.listWithCount(key);
     }
+
+    private record CachedSize(Long bytes, long expiresAt) {
+    }
 }
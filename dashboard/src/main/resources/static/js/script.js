@@ -8,10 +8,28 @@ function loadToggleState(targetId) {
     return localStorage.getItem(`toggle_${targetId}`);
 }
 
+// Latest key lists pushed by the server over /api/updates, by prefix
+const pushedKeyMaps = {};
+
+// Select element showing the keys of each pushed prefix, the same prefixes as DashboardUpdates.KEY_VIEWS.
+// Time-sliced keys carry a suffix (message-dedup-bf:<slice>, words-set:<minute>) and still match
+const keySelectsByPrefix = {
+    'words-bucket-cms:': 'countmin-select',
+    'words-bucket-zset:': 'countmin-sortedset-select',
+    '*-bf': 'bloom-select',
+    '*-set': 'bloom-set-select',
+    'spiking-topk:': 'topk-select',
+    'spiking-zset:': 'topk-sortedset-select'
+};
+
 // Function to fetch Redis keys by prefix
 function fetchKeysByPrefix(prefix) {
+    // Once the update stream has delivered this list there is no need to ask the server again
+    if (pushedKeyMaps[prefix]) {
+        return Promise.resolve({ ...pushedKeyMaps[prefix] });
+    }
     console.log(`Fetching keys with prefix: ${prefix}`);
-    return fetch(`/api/keys?prefix=${prefix}`)
+    return fetch(`/api/keys?prefix=${encodeURIComponent(prefix)}`)
         .then(response => {
             if (!response.ok) {
                 throw new Error(`HTTP error! status: ${response.status}`);
@@ -71,6 +89,43 @@ function fetchKeysByPrefix(prefix) {
         });
 }
 
+// Function to subscribe to server-pushed updates; the browser reconnects on its own if the stream drops
+function subscribeToUpdates() {
+    const source = new EventSource('/api/updates');
+    source.addEventListener('keys', event => applyKeysDelta(JSON.parse(event.data)));
+    source.addEventListener('topk', event => applyTopKUpdate(JSON.parse(event.data)));
+    source.onerror = () => console.warn('Update stream interrupted, waiting for the browser to reconnect');
+}
+
+// Function to apply a key list delta and refresh the matching select, keeping the current selection
+function applyKeysDelta(delta) {
+    const keyMap = delta.reset ? {} : { ...(pushedKeyMaps[delta.prefix] || {}) };
+    delta.removed.forEach(key => delete keyMap[key]);
+    Object.assign(keyMap, delta.upserted);
+
+    // Newest first, like /api/keys
+    const sorted = Object.fromEntries(Object.entries(keyMap).sort(([a], [b]) => (a < b ? 1 : a > b ? -1 : 0)));
+    pushedKeyMaps[delta.prefix] = sorted;
+
+    const selectId = keySelectsByPrefix[delta.prefix];
+    const select = selectId && document.getElementById(selectId);
+    if (select) {
+        const selected = select.value;
+        populateSelect(selectId, sorted);
+        if (selected && sorted[selected] !== undefined) {
+            select.value = selected;
+        }
+    }
+}
+
+// Function to show pushed TopK entries when that TopK is the one being viewed
+function applyTopKUpdate(update) {
+    const select = document.getElementById('topk-select');
+    if (select && select.value === update.key) {
+        displayData('topk-data', update.items);
+    }
+}
+
 // Function to fetch data for a specific key
 function fetchDataForKey(key, dataType) {
     console.log(`Fetching data for key: ${key}, type: ${dataType}`);
@@ -152,7 +207,7 @@ function populateSelect(selectId, keySizeMap) {
             entries.forEach(([key, size]) => {
                 const optionElement = document.createElement('option');
                 optionElement.value = key;
-                optionElement.textContent = `${key} (${size})`;
+                optionElement.textContent = `${keyLabel(key)} (${size})`;
                 select.appendChild(optionElement);
             });
             console.log(`Added ${entries.length} options to select ${selectId}`);
@@ -167,6 +222,15 @@ function populateSelect(selectId, keySizeMap) {
     }
 }
 
+// Function to show the start of a bucket next to its key; bucket keys end with an epoch second
+function keyLabel(key) {
+    const match = key.match(/:(\d{10})$/);
+    if (!match) {
+        return key;
+    }
+    return `${key} - ${new Date(Number(match[1]) * 1000).toLocaleString()}`;
+}
+
 // Function to display data in a container
 function displayData(containerId, data) {
     console.log(`Displaying data in container ${containerId}:`, data);
@@ -228,6 +292,8 @@ function displayData(containerId, data) {
 document.addEventListener('DOMContentLoaded', function() {
     console.log("DOM content loaded, initializing toggle states");
 
+    subscribeToUpdates();
+
     // Set up toggle buttons
     document.querySelectorAll(".toggle-btn").forEach(button => {
         const targetId = button.getAttribute("data-target");
@@ -258,7 +324,7 @@ document.addEventListener('DOMContentLoaded', function() {
                 });
             } else if (targetId === 'bloom-column') {
                 console.log(`Refreshing bloom selects`);
-                fetchKeysByPrefix('*bf').then(keyMap => {
+                fetchKeysByPrefix('*-bf').then(keyMap => {
                     populateSelect('bloom-select', keyMap);
                 });
                 fetchKeysByPrefix('*-set').then(keyMap => {
@@ -318,7 +384,7 @@ document.addEventListener('DOMContentLoaded', function() {
                         });
                     } else if (targetId === 'bloom-column') {
                         console.log(`Refreshing bloom selects`);
-                        fetchKeysByPrefix('*bf').then(keyMap => {
+                        fetchKeysByPrefix('*-bf').then(keyMap => {
                             populateSelect('bloom-select', keyMap);
                         });
                         fetchKeysByPrefix('*-set').then(keyMap => {
@@ -356,7 +422,7 @@ document.addEventListener('DOMContentLoaded', function() {
     });
 
     // Set up Bloom Filter selects
-    fetchKeysByPrefix('*bf').then(keyMap => {
+    fetchKeysByPrefix('*-bf').then(keyMap => {
         populateSelect('bloom-select', keyMap);
     });
 
@@ -522,7 +588,7 @@ document.querySelectorAll(".toggle-btn").forEach(button => {
                     populateSelect('countmin-sortedset-select', keyMap);
                 });
             } else if (targetId === 'bloom-column') {
-                fetchKeysByPrefix('*bf').then(keyMap => {
+                fetchKeysByPrefix('*-bf').then(keyMap => {
                     populateSelect('bloom-select', keyMap);
                 });
                 fetchKeysByPrefix('*-set').then(keyMap => {
@@ -1,49 +1,187 @@
 package com.redis.om.partthreetopk;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service for detecting and filtering duplicate messages using Bloom filters.
+ * Recently seen URIs are remembered in-process, so replayed duplicates are mostly answered without Redis.
+ * Everything else is checked and added in one atomic call per frame, which stays correct across ingest instances.
+ * <p>
+ * Filters are time-sliced ({@code message-dedup-bf:<slice start>}): URIs are added to the current slice and
+ * checked against the last few, older slices expire. Each slice is sized from the number of new URIs seen in the
+ * previous one, so memory and false-positive rate stay constant regardless of uptime.
  */
 @Service
 public class DeduplicationService {
     private static final Logger logger = LoggerFactory.getLogger(DeduplicationService.class);
-    private static final String DEDUP_BLOOM_FILTER = "message-dedup-bf";
-    private static final String DEDUP_SET = "message-dedup-set";
-    private static final int EXPECTED_ITEMS = 100000; // Adjust based on expected volume
+    private static final String DEDUP_BLOOM_FILTER = "message-dedup-bf:";
+    private static final String DEDUP_SET = "message-dedup-set:";
+    private static final String DEDUP_COUNT = "message-dedup-count:";
     private static final double FALSE_POSITIVE_RATE = 0.01; // 1% false positive rate
-    
+    private static final double CAPACITY_HEADROOM = 1.5; // Room for growth over the previous slice
+    private static final int MAX_BATCH_SIZE = 1000; // Keeps the script's unpack() well within Lua's stack limit
+
     private final RedisService redisService;
-    
-    public DeduplicationService(RedisService redisService) {
+    private final KeyRegistry keyRegistry;
+    private final RecentUriCache recentUris;
+    private final long sliceSeconds;
+    private final int sliceCount;
+    private final int minCapacity;
+
+    private final Counter localDuplicates;
+    private final Counter duplicates;
+    private final Counter newMessages;
+    private final Timer redisTimer;
+
+    // Creating a slice's filter calls Redis, so it is guarded by a lock that does not pin the virtual-thread workers
+    private final ReentrantLock sliceLock = new ReentrantLock();
+    private volatile long currentSlice = -1;
+    private volatile long currentCapacity;
+    private final AtomicLong currentSliceAdded = new AtomicLong();
+
+    public DeduplicationService(RedisService redisService,
+                                KeyRegistry keyRegistry,
+                                @Value("${dedup.cache.capacity:100000}") int cacheCapacity,
+                                @Value("${dedup.cache.window-seconds:300}") long cacheWindowSeconds,
+                                @Value("${dedup.filter.slice-seconds:3600}") long sliceSeconds,
+                                @Value("${dedup.filter.slices:3}") int sliceCount,
+                                @Value("${dedup.filter.min-capacity:100000}") int minCapacity,
+                                MeterRegistry meterRegistry) {
         this.redisService = redisService;
-        initializeBloomFilter();
+        this.keyRegistry = keyRegistry;
+        this.recentUris = new RecentUriCache(cacheCapacity, cacheWindowSeconds);
+        this.sliceSeconds = sliceSeconds;
+        this.sliceCount = sliceCount;
+        this.minCapacity = minCapacity;
+        this.currentCapacity = minCapacity;
+
+        this.localDuplicates = meterRegistry.counter("dedup.checks", "result", "local_duplicate");
+        this.duplicates = meterRegistry.counter("dedup.checks", "result", "duplicate");
+        this.newMessages = meterRegistry.counter("dedup.checks", "result", "new");
+        this.redisTimer = meterRegistry.timer("redis.latency", "op", "dedup");
+        Gauge.builder("dedup.filter.false_positive.estimate", this, DeduplicationService::estimatedFalsePositiveRate)
+                .description("Estimated false-positive rate of the current slice's filter, from this instance's inserts")
+                .register(meterRegistry);
+    }
+
+    public boolean isNewMessage(String uri) {
+        return areNewMessages(List.of(uri)).get(0);
+    }
+
+    /**
+     * Returns, for each URI, whether it is seen for the first time. All URIs that are not in the local cache
+     * are checked and added with a single atomic Redis call, and only remembered locally once Redis has answered:
+     * if the call fails, a retry of the same posts is checked against Redis again instead of being dropped.
+     */
+    public List<Boolean> areNewMessages(List<String> uris) {
+        List<Boolean> result = new ArrayList<>(uris.size());
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < uris.size(); i++) {
+            boolean unseen = !recentUris.contains(uris.get(i));
+            result.add(unseen);
+            if (unseen) {
+                misses.add(i);
+            } else {
+                localDuplicates.increment();
+                logger.debug("Duplicate message detected locally: {}", uris.get(i));
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        long slice = ensureCurrentSlice();
+        List<String> olderFilters = new ArrayList<>(sliceCount - 1);
+        for (int k = 1; k < sliceCount; k++) {
+            olderFilters.add(DEDUP_BLOOM_FILTER + (slice - k * sliceSeconds));
+        }
+        long ttlSeconds = sliceSeconds * (sliceCount + 1);
+
+        for (int from = 0; from < misses.size(); from += MAX_BATCH_SIZE) {
+            List<Integer> chunk = misses.subList(from, Math.min(from + MAX_BATCH_SIZE, misses.size()));
+            List<String> items = chunk.stream().map(uris::get).toList();
+            List<Boolean> added = redisTimer.record(() -> redisService.addNewToBloomFilter(DEDUP_BLOOM_FILTER + slice,
+                    DEDUP_SET + slice, DEDUP_COUNT + slice, olderFilters, ttlSeconds, items));
+            for (int j = 0; j < chunk.size(); j++) {
+                recentUris.add(items.get(j));
+                if (added.get(j)) {
+                    newMessages.increment();
+                    currentSliceAdded.incrementAndGet();
+                } else {
+                    duplicates.increment();
+                    result.set(chunk.get(j), false);
+                    logger.debug("Duplicate message detected: {}", uris.get(chunk.get(j)));
+                }
+            }
+        }
+
+        return result;
     }
-    
+
+    private long ensureCurrentSlice() {
+        long slice = Instant.now().getEpochSecond() / sliceSeconds * sliceSeconds;
+        if (slice == currentSlice) {
+            return slice;
+        }
+
+        sliceLock.lock();
+        try {
+            if (slice != currentSlice) {
+                currentCapacity = createFilter(slice);
+                currentSliceAdded.set(0);
+                currentSlice = slice;
+            }
+        } finally {
+            sliceLock.unlock();
+        }
+        return slice;
+    }
+
     /**
-     * Initialize the bloom filter for message deduplication if it doesn't exist.
+     * Create the bloom filter for a slice if it doesn't exist, sized from the previous slice's traffic.
+     * Returns the capacity the filter was (or would have been) created with.
      */
-    private void initializeBloomFilter() {
-        if (!redisService.exists(DEDUP_BLOOM_FILTER)) {
-            logger.info("Creating deduplication bloom filter");
-            redisService.createBloomFilter(DEDUP_BLOOM_FILTER, EXPECTED_ITEMS, FALSE_POSITIVE_RATE);
+    private int createFilter(long slice) {
+        String previousCount = redisService.get(DEDUP_COUNT + (slice - sliceSeconds));
+        long observed = previousCount == null ? 0 : Long.parseLong(previousCount);
+        int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(minCapacity, (long) (observed * CAPACITY_HEADROOM)));
+
+        String key = DEDUP_BLOOM_FILTER + slice;
+        keyRegistry.register(DEDUP_BLOOM_FILTER, Long.toString(slice), sliceSeconds * (sliceCount + 1));
+        keyRegistry.register(DEDUP_SET, Long.toString(slice), sliceSeconds * (sliceCount + 1));
+        if (redisService.exists(key)) {
+            return capacity;
         }
+
+        try {
+            logger.info("Creating deduplication bloom filter {} for {} items", key, capacity);
+            redisService.createBloomFilter(key, capacity, FALSE_POSITIVE_RATE);
+            redisService.expire(key, sliceSeconds * (sliceCount + 1));
+        } catch (JedisDataException e) {
+            logger.debug("Deduplication bloom filter {} was created by another instance", key);
+        }
+        return capacity;
     }
 
-    public boolean isNewMessage(String uri) {
-        // Check if the message hash exists in the bloom filter
-        boolean isDuplicate = redisService.isInBloomFilter(DEDUP_BLOOM_FILTER, uri);
-        
-        if (!isDuplicate) {
-            // If it's not a duplicate, add it to the bloom filter
-            redisService.addMultiToBloomFilter(DEDUP_BLOOM_FILTER, uri);
-            redisService.sAdd(DEDUP_SET, uri);
-            return true;
-        }
-        
-        logger.debug("Duplicate message detected: {}",uri);
-        return false;
+    // Standard Bloom filter estimate (1 - e^(-kn/m))^k for a filter sized for currentCapacity at FALSE_POSITIVE_RATE
+    private double estimatedFalsePositiveRate() {
+        double bitsPerItem = -Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2));
+        double hashes = Math.ceil(-Math.log(FALSE_POSITIVE_RATE) / Math.log(2));
+        double fill = currentSliceAdded.get() / (bitsPerItem * currentCapacity);
+        return Math.pow(1 - Math.exp(-hashes * fill), hashes);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package com.redis.om.partthreetopk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event time of the pipeline. Posts are bucketed by their Jetstream {@code time_us}, not by when this node
+ * processes them, so backlog, replays and catch-up after a reconnect land in the same buckets as live traffic.
+ * <p>
+ * The watermark trails the latest event time seen by {@code ingest.event-time.allowed-lateness-seconds}. Everything
+ * before the watermark is considered complete: spikes are scored and minutes rolled up only up to it, and events
+ * older than it are dropped as late. The watermark only moves with incoming events, which the firehose never runs
+ * out of.
+ * <p>
+ * The watermark is also held back by the work still in flight, so it never passes counts that are not written yet,
+ * however far a fast replay runs ahead: a received frame holds it where it was until the frame is decoded, and an
+ * accepted event holds it at the event's second until its counts are written to Redis (see {@link MetricsBatcher}).
+ * Whether an event is late is decided against the event time at the frame's arrival, so it doesn't depend on how
+ * the workers happen to be scheduled.
+ * <p>
+ * Bucket keys are the epoch second at which the bucket starts, e.g. {@code words-bucket-cms:1735725600}.
+ */
+@Component
+public class EventClock {
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final long allowedLatenessMillis;
+    private final AtomicLong maxEventMillis = new AtomicLong();
+    // Holds of the frames not decoded yet and of the events not written yet, by epoch second
+    private final ConcurrentSkipListMap<Long, Long> pending = new ConcurrentSkipListMap<>();
+
+    public EventClock(@Value("${ingest.event-time.allowed-lateness-seconds:10}") long allowedLatenessSeconds) {
+        this.allowedLatenessMillis = TimeUnit.SECONDS.toMillis(allowedLatenessSeconds);
+    }
+
+    /**
+     * Takes the hold of a frame that was just received. Its events are late if they are older than the latest
+     * event time at arrival minus the allowed lateness. Must be {@link #processed processed} once its events are
+     * accepted or dropped.
+     */
+    public Frame arrived() {
+        long held = second(maxEventMillis.get() - allowedLatenessMillis);
+        pending.merge(held, 1L, Long::sum);
+        // Read again once held: no watermark computed before the hold was taken can be past this
+        return new Frame(held, maxEventMillis.get() - allowedLatenessMillis);
+    }
+
+    public void processed(Frame frame) {
+        releaseSecond(frame.heldSecond());
+    }
+
+    /**
+     * Returns whether an event of the frame is on time and if so, moves event time forward to {@code eventMillis}
+     * if it is the latest seen. An event on time holds the watermark until it is {@link #release released}.
+     */
+    public boolean accept(Frame frame, long eventMillis) {
+        if (eventMillis < frame.lateBeforeMillis()) {
+            return false;
+        }
+        pending.merge(second(eventMillis), 1L, Long::sum);
+        maxEventMillis.accumulateAndGet(eventMillis, Math::max);
+        return true;
+    }
+
+    /**
+     * Releases the hold of an accepted event, once its counts are written or given up on.
+     */
+    public void release(long eventMillis) {
+        releaseSecond(second(eventMillis));
+    }
+
+    /**
+     * Event time up to which all events are assumed to have arrived and been written, or 0 before the first event.
+     */
+    public long watermarkMillis() {
+        long max = maxEventMillis.get();
+        if (max == 0) {
+            return 0;
+        }
+        Map.Entry<Long, Long> oldestPending = pending.firstEntry();
+        long watermark = max - allowedLatenessMillis;
+        if (oldestPending != null) {
+            watermark = Math.min(watermark, TimeUnit.SECONDS.toMillis(oldestPending.getKey()));
+        }
+        // Frames received before the first event hold it at the start of time
+        return Math.max(watermark, 0);
+    }
+
+    private void releaseSecond(long second) {
+        pending.computeIfPresent(second, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static long second(long millis) {
+        return Math.floorDiv(millis, 1000);
+    }
+
+    // Jetstream's time_us; events without one are stamped with the processing time
+    public static long eventMillis(long timeUs) {
+        return timeUs > 0 ? TimeUnit.MICROSECONDS.toMillis(timeUs) : System.currentTimeMillis();
+    }
+
+    public static long minuteStart(long millis) {
+        return Math.floorDiv(millis, MINUTE_MILLIS) * MINUTE_MILLIS;
+    }
+
+    public static String minuteBucket(long millis) {
+        return bucket(minuteStart(millis));
+    }
+
+    public static String hourBucket(long millis) {
+        return bucket(Math.floorDiv(millis, HOUR_MILLIS) * HOUR_MILLIS);
+    }
+
+    // Days are UTC days
+    public static String dayBucket(long millis) {
+        return bucket(Math.floorDiv(millis, DAY_MILLIS) * DAY_MILLIS);
+    }
+
+    public static String bucket(long startMillis) {
+        return Long.toString(TimeUnit.MILLISECONDS.toSeconds(startMillis));
+    }
+
+    /**
+     * Hold of a received frame on the watermark, see {@link #arrived()}.
+     */
+    public record Frame(long heldSecond, long lateBeforeMillis) {
+    }
+}
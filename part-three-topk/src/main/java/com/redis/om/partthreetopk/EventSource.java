@@ -0,0 +1,29 @@
+package com.redis.om.partthreetopk;
+
+/**
+ * Where Jetstream frames come from. The live WebSocket and recorded captures are interchangeable behind
+ * {@link JetstreamClient}, selected with {@code jetstream.source} ({@code websocket} or {@code replay}).
+ */
+public interface EventSource {
+
+    /**
+     * Receives frames as they arrive. Both methods may be called from the source's own thread and must not block
+     * for longer than queueing the frame takes.
+     */
+    interface Sink {
+        void onText(String frame);
+
+        void onCompressed(byte[] frame);
+    }
+
+    void start(Sink sink) throws Exception;
+
+    void stop() throws Exception;
+
+    /**
+     * Whether the frames are live and the processed position should be checkpointed for resuming.
+     */
+    default boolean resumable() {
+        return false;
+    }
+}
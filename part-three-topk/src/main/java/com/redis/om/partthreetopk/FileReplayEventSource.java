@@ -0,0 +1,177 @@
+package com.redis.om.partthreetopk;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recorded firehose capture: one Jetstream event per line, either plain (memory-mapped) or a
+ * {@code .zst} compressed file. Events are paced by their {@code time_us} at {@code jetstream.replay.speed}
+ * times real time, or sent as fast as the ingest queue accepts them when the speed is 0.
+ * <p>
+ * Post URIs stay in the dedup filters for a few hours, so replaying the same capture twice against the same Redis
+ * mostly measures the duplicate path.
+ */
+@Component
+@ConditionalOnProperty(name = "jetstream.source", havingValue = "replay")
+public class FileReplayEventSource implements EventSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileReplayEventSource.class);
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024; // Mapped at once, must hold the longest line
+    private static final String TIME_US_FIELD = "\"time_us\":";
+    private static final int PROGRESS_INTERVAL = 100_000;
+
+    private final Path file;
+    private final double speed;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    private long firstTimeUs;
+    private long startNanos;
+    private long events;
+
+    public FileReplayEventSource(@Value("${jetstream.replay.file}") Path file,
+                                 @Value("${jetstream.replay.speed:1.0}") double speed) {
+        this.file = file;
+        this.speed = speed;
+    }
+
+    @Override
+    public synchronized void start(Sink sink) throws IOException {
+        if (!Files.isReadable(file)) {
+            throw new IOException("Replay file not readable: " + file);
+        }
+        running = true;
+        thread = Thread.ofPlatform().name("jetstream-replay").start(() -> {
+            logger.info("Replaying {} at {}", file, speed > 0 ? speed + "x" : "max speed");
+            startNanos = System.nanoTime();
+            try {
+                if (file.getFileName().toString().endsWith(".zst")) {
+                    replayCompressed(sink);
+                } else {
+                    replayMapped(sink);
+                }
+            } catch (IOException e) {
+                logger.error("Replay of {} failed: {}", file, e.getMessage());
+            }
+            long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            logger.info("Replayed {} events in {} ms ({} events/s)", events, elapsedMillis, events * 1000 / elapsedMillis);
+        });
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void replayMapped(Sink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size && running) {
+                int length = (int) Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int lineStart = 0;
+                for (int i = 0; i < length && running; i++) {
+                    if (window.get(i) == '\n') {
+                        emit(sink, lineAt(window, lineStart, i));
+                        lineStart = i + 1;
+                    }
+                }
+
+                if (position + length == size) {
+                    if (lineStart < length) {
+                        emit(sink, lineAt(window, lineStart, length));
+                    }
+                    position = size;
+                } else if (lineStart == 0) {
+                    throw new IOException("Line at offset " + position + " is longer than " + WINDOW_SIZE + " bytes");
+                } else {
+                    // Map the next window from the start of the line that did not fit
+                    position += lineStart;
+                }
+            }
+        }
+    }
+
+    private void replayCompressed(Sink sink) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ZstdInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while (running && (line = reader.readLine()) != null) {
+                emit(sink, line);
+            }
+        }
+    }
+
+    private static String lineAt(MappedByteBuffer window, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        window.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void emit(Sink sink, String line) {
+        if (line.isBlank()) {
+            return;
+        }
+        if (speed > 0) {
+            pace(timeUs(line));
+        }
+        sink.onText(line);
+        if (++events % PROGRESS_INTERVAL == 0) {
+            logger.info("Replayed {} events", events);
+        }
+    }
+
+    // Waits until the event is due relative to the first replayed event
+    private void pace(long timeUs) {
+        if (timeUs <= 0) {
+            return;
+        }
+        if (firstTimeUs == 0) {
+            firstTimeUs = timeUs;
+            return;
+        }
+        long dueNanos = startNanos + (long) (TimeUnit.MICROSECONDS.toNanos(timeUs - firstTimeUs) / speed);
+        long waitNanos;
+        while (running && (waitNanos = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(waitNanos);
+        }
+    }
+
+    // Reads time_us without parsing the whole event; Jetstream writes it near the start of the line
+    private static long timeUs(String line) {
+        int index = line.indexOf(TIME_US_FIELD);
+        if (index < 0) {
+            return 0;
+        }
+        long value = 0;
+        for (int i = index + TIME_US_FIELD.length(); i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,24 @@
+package com.redis.om.partthreetopk;
+
+/**
+ * 64-bit hashing of char sequences without allocating: FNV-1a over the chars followed by a 64-bit finalizer.
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    static long hash64(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
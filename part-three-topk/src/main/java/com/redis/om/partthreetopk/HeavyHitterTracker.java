@@ -0,0 +1,220 @@
+package com.redis.om.partthreetopk;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a {@link SpaceSaving} summary of the heaviest terms of every open minute and writes it once the
+ * {@link EventClock} watermark closes the minute: the top K terms go to {@code words-bucket-zset:<bucket>} and the
+ * error of each of their counts to {@code words-bucket-zset-error:<bucket>}. The ZSET is bounded by K instead of
+ * the vocabulary, and terms cost nothing in Redis until the minute closes.
+ * Counts are written with ZINCRBY/HINCRBY, so several ingest instances can share the same bucket. The write is a
+ * single script that first sets a marker for this instance and minute, so a retry of a write that Redis did apply
+ * (e.g. after a timeout) does not count the minute twice.
+ * <p>
+ * So the open minute can be viewed live, its current top K is also written every few seconds to
+ * {@code words-bucket-zset-open:<bucket>}, a provisional snapshot that is overwritten each time, expires on its own
+ * and is deleted once the minute's final ZSET is written.
+ * <p>
+ * Terms are added from the virtual-thread ingest workers, so the summaries are guarded by a {@link ReentrantLock}
+ * that is never held during a Redis call: a closed minute is taken out of the map before it is written, and put
+ * back if the write fails.
+ */
+@Component
+public class HeavyHitterTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeavyHitterTracker.class);
+    static final String ERROR_PREFIX = "words-bucket-zset-error:";
+    static final String OPEN_PREFIX = "words-bucket-zset-open:";
+    private static final String WRITTEN_PREFIX = "words-bucket-zset-written:";
+    private static final long SNAPSHOT_TTL_SECONDS = 120;
+    // Only has to outlive the retries of a failed write
+    private static final long WRITTEN_TTL_SECONDS = 3_600;
+    // Adds a closed minute's counts unless this instance already wrote them.
+    // KEYS: written marker, minute ZSET, error hash, open snapshot
+    // ARGV: marker expiry in seconds, top K, then term, count and error for each term
+    private static final String WRITE_SCRIPT = """
+            if not redis.call('SET', KEYS[1], '1', 'NX', 'EX', ARGV[1]) then
+                return 0
+            end
+            for i = 3, #ARGV, 3 do
+                redis.call('ZINCRBY', KEYS[2], ARGV[i + 1], ARGV[i])
+                if tonumber(ARGV[i + 2]) > 0 then
+                    redis.call('HINCRBY', KEYS[3], ARGV[i], ARGV[i + 2])
+                end
+            end
+            -- Another instance may have written different terms to the same bucket
+            redis.call('ZREMRANGEBYRANK', KEYS[2], 0, -(tonumber(ARGV[2]) + 1))
+            redis.call('DEL', KEYS[4])
+            return 1
+            """;
+
+    private final RedisService redisService;
+    private final KeyRegistry keyRegistry;
+    private final EventClock eventClock;
+    private final int capacity;
+    private final int topK;
+    private final String writerId = UUID.randomUUID().toString();
+    private final Map<String, SpaceSaving> open = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Timer writeTimer;
+
+    public HeavyHitterTracker(RedisService redisService,
+                              KeyRegistry keyRegistry,
+                              EventClock eventClock,
+                              @Value("${ingest.heavy-hitters.capacity:5000}") int capacity,
+                              @Value("${ingest.heavy-hitters.top-k:1000}") int topK,
+                              MeterRegistry meterRegistry) {
+        this.redisService = redisService;
+        this.keyRegistry = keyRegistry;
+        this.eventClock = eventClock;
+        this.capacity = capacity;
+        this.topK = topK;
+        this.writeTimer = meterRegistry.timer("redis.latency", "op", "heavy_hitters_write");
+    }
+
+    public void add(String timeBucket, Map<String, Long> termCounts) {
+        lock.lock();
+        try {
+            SpaceSaving summary = open.computeIfAbsent(timeBucket, bucket -> new SpaceSaving(capacity));
+            termCounts.forEach(summary::add);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingest.heavy-hitters.flush-interval-ms:1000}")
+    public void flush() {
+        try {
+            write(eventClock.watermarkMillis());
+        } catch (RuntimeException e) {
+            logger.error("Failed to write heavy hitters: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingest.heavy-hitters.snapshot-interval-ms:5000}")
+    public void snapshot() {
+        Map<String, List<SpaceSaving.Counter>> snapshots = new HashMap<>();
+        lock.lock();
+        try {
+            open.forEach((timeBucket, summary) -> snapshots.put(timeBucket, summary.top(topK)));
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            snapshots.forEach(this::writeSnapshot);
+        } catch (RuntimeException e) {
+            logger.error("Failed to write heavy hitter snapshot: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            // Nothing arrives anymore, every minute is closed
+            write(Long.MAX_VALUE);
+        } catch (RuntimeException e) {
+            logger.error("Failed to write heavy hitters: {}", e.getMessage());
+        }
+    }
+
+    private void write(long watermarkMillis) {
+        Map<String, SpaceSaving> closed = takeClosed(watermarkMillis);
+        Iterator<Map.Entry<String, SpaceSaving>> entries = closed.entrySet().iterator();
+        try {
+            while (entries.hasNext()) {
+                Map.Entry<String, SpaceSaving> entry = entries.next();
+                write(entry.getKey(), entry.getValue().top(topK));
+                entries.remove();
+            }
+        } finally {
+            // Whatever was not written is retried on the next flush
+            closed.forEach(this::restore);
+        }
+    }
+
+    private Map<String, SpaceSaving> takeClosed(long watermarkMillis) {
+        Map<String, SpaceSaving> closed = new TreeMap<>();
+        lock.lock();
+        try {
+            Iterator<Map.Entry<String, SpaceSaving>> entries = open.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, SpaceSaving> entry = entries.next();
+                long endMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(entry.getKey()) + 60);
+                if (endMillis <= watermarkMillis) {
+                    closed.put(entry.getKey(), entry.getValue());
+                    entries.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return closed;
+    }
+
+    private void restore(String timeBucket, SpaceSaving summary) {
+        lock.lock();
+        try {
+            if (open.putIfAbsent(timeBucket, summary) != null) {
+                logger.warn("Dropping heavy hitters of reopened bucket {}", timeBucket);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(String timeBucket, List<SpaceSaving.Counter> top) {
+        if (top.isEmpty()) {
+            return;
+        }
+
+        String zsetKey = "words-bucket-zset:" + timeBucket;
+        List<String> keys = List.of(WRITTEN_PREFIX + timeBucket + ":" + writerId, zsetKey,
+                ERROR_PREFIX + timeBucket, OPEN_PREFIX + timeBucket);
+        List<String> args = new ArrayList<>(2 + 3 * top.size());
+        args.add(Long.toString(WRITTEN_TTL_SECONDS));
+        args.add(Integer.toString(topK));
+        for (SpaceSaving.Counter counter : top) {
+            args.add(counter.term());
+            args.add(Long.toString(counter.count()));
+            args.add(Long.toString(counter.error()));
+        }
+        writeTimer.record(() -> redisService.eval(WRITE_SCRIPT, keys, args));
+        keyRegistry.register("words-bucket-zset:", timeBucket);
+        keyRegistry.register(ERROR_PREFIX, timeBucket);
+
+        logger.debug("Wrote {} heavy hitters to {}", top.size(), zsetKey);
+    }
+
+    private void writeSnapshot(String timeBucket, List<SpaceSaving.Counter> top) {
+        if (top.isEmpty()) {
+            return;
+        }
+
+        String key = OPEN_PREFIX + timeBucket;
+        Map<String, Double> scores = new HashMap<>();
+        top.forEach(counter -> scores.put(counter.term(), (double) counter.count()));
+        writeTimer.record(() -> redisService.pipelined(pipeline -> {
+            pipeline.del(key);
+            pipeline.zadd(key, scores);
+            pipeline.expire(key, SNAPSHOT_TTL_SECONDS);
+        }));
+    }
+}
@@ -1,111 +1,199 @@
 package com.redis.om.partthreetopk;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdDictDecompress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PreDestroy;
-import jakarta.websocket.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.net.URI;
-
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds frames from the configured {@link EventSource} through decoding, deduplication and term processing.
+ * Frames are handled on the dispatcher's workers so the source's thread never waits on Redis.
+ */
 @Component
-@ClientEndpoint
-public class JetstreamClient {
+public class JetstreamClient implements EventSource.Sink {
 
     private static final Logger logger = LoggerFactory.getLogger(JetstreamClient.class);
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final JetstreamEventDecoder decoder = new JetstreamEventDecoder();
 
+    private final EventSource source;
     private final DeduplicationService deduplicationService;
     private final JetstreamProcessor processor;
-
-    private Session session;
-    private URI endpointURI;
-    private boolean manuallyClosed = false;
-
-    public JetstreamClient(DeduplicationService deduplicationService, JetstreamProcessor processor) {
+    private final MessageDispatcher dispatcher;
+    private final JetstreamCursor cursor;
+    private final EventClock eventClock;
+    private final ThreadLocal<ZstdFrameDecompressor> decompressors;
+
+    private final Counter framesReceived;
+    private final Counter framesMalformed;
+    private final Counter eventsProcessed;
+    private final Counter eventsDuplicate;
+    private final Counter eventsLate;
+    private final Map<JetstreamEventDecoder.Rejection, Counter> eventsRejected = new EnumMap<>(JetstreamEventDecoder.Rejection.class);
+    private final Timer decodeTimer;
+
+    public JetstreamClient(EventSource source, DeduplicationService deduplicationService, JetstreamProcessor processor,
+                           MessageDispatcher dispatcher, JetstreamCursor cursor, EventClock eventClock,
+                           ResourceLoader resourceLoader,
+                           MeterRegistry meterRegistry,
+                           @Value("${jetstream.compression.enabled:false}") boolean compressed,
+                           @Value("${jetstream.compression.dictionary:classpath:zstd_dictionary}") String dictionary) {
+        this.source = source;
         this.deduplicationService = deduplicationService;
         this.processor = processor;
-    }
+        this.dispatcher = dispatcher;
+        this.cursor = cursor;
+        this.eventClock = eventClock;
+        if (compressed) {
+            // The digested dictionary is shared, every worker gets its own decompression context and buffer
+            ZstdDictDecompress zstdDictionary = loadDictionary(resourceLoader, dictionary);
+            this.decompressors = ThreadLocal.withInitial(() -> new ZstdFrameDecompressor(zstdDictionary));
+        } else {
+            this.decompressors = null;
+        }
 
-    @OnOpen
-    public void onOpen(Session session) {
-        logger.info("Connected to Bluesky stream");
+        this.framesReceived = meterRegistry.counter("jetstream.frames");
+        this.framesMalformed = meterRegistry.counter("jetstream.frames.malformed");
+        this.eventsProcessed = meterRegistry.counter("jetstream.events.processed");
+        this.eventsDuplicate = meterRegistry.counter("jetstream.events.filtered", "reason", "duplicate");
+        this.eventsLate = meterRegistry.counter("jetstream.events.filtered", "reason", "late");
+        for (JetstreamEventDecoder.Rejection rejection : JetstreamEventDecoder.Rejection.values()) {
+            eventsRejected.put(rejection, meterRegistry.counter("jetstream.events.filtered",
+                    "reason", rejection.name().toLowerCase()));
+        }
+        this.decodeTimer = meterRegistry.timer("jetstream.decode");
     }
 
-    @OnMessage
-    public void onMessage(String message) throws JsonProcessingException {
-        for (String line : message.split("\n")) {
-            Event event = objectMapper.readValue(line, Event.class);
-
-            if (event.commit == null || event.commit.record == null || event.commit.record.text == null) {
-                continue;
-            }
+    @Override
+    public void onText(String message) {
+        framesReceived.increment();
+        EventClock.Frame arrival = eventClock.arrived();
+        dispatch(arrival, () -> handleMessage(message, arrival));
+    }
 
-            if (event.commit.record.langs != null && !event.commit.record.langs.contains("en")) {
-                continue; // Skip non-English
-            }
+    @Override
+    public void onCompressed(byte[] frame) {
+        // Compressed frames are queued as received and decompressed on the worker
+        framesReceived.increment();
+        EventClock.Frame arrival = eventClock.arrived();
+        dispatch(arrival, () -> handleCompressedMessage(frame, arrival));
+    }
 
-            String uri = "at://" + event.did + "/app.bsky.feed.post/" + event.commit.rkey;
-            if (!deduplicationService.isNewMessage(uri)) {
-                logger.debug("Skipping duplicate message");
-                return;
+    // The frame holds the watermark until it is handled; by then every accepted event holds it itself
+    private void dispatch(EventClock.Frame arrival, Runnable handler) {
+        boolean queued = dispatcher.dispatch(() -> {
+            try {
+                handler.run();
+            } finally {
+                eventClock.processed(arrival);
             }
-
-            processor.process(event.commit.record.text);
+        });
+        if (!queued) {
+            eventClock.processed(arrival);
         }
     }
 
-    @OnClose
-    public void onClose(Session session, CloseReason closeReason) {
-        logger.info("Disconnected: {}", closeReason);
-        if (!manuallyClosed) tryReconnect();
+    public void start() throws Exception {
+        dispatcher.start();
+        source.start(this);
     }
 
-    @OnError
-    public void onError(Session session, Throwable throwable) {
-        logger.error("WebSocket error: {}", throwable.getMessage());
-        if (!manuallyClosed) tryReconnect();
+    @PreDestroy
+    public void stop() throws Exception {
+        source.stop();
+        // Finish the frames already received while the cursor and the writers are still up
+        dispatcher.stop();
     }
 
-    public void start(String uri) throws Exception {
-        this.endpointURI = new URI(uri);
-        connect();
+    private void handleMessage(String message, EventClock.Frame arrival) {
+        List<JetstreamEventDecoder.Post> posts = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            decoder.decode(message, posts::add, this::countRejection);
+        } catch (IOException e) {
+            framesMalformed.increment();
+            logger.warn("Skipping malformed message: {}", e.getMessage());
+        }
+        decodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        handlePosts(posts, arrival);
     }
 
-    @PreDestroy
-    public void stop() throws IOException {
-        manuallyClosed = true;
-        if (session != null && session.isOpen()) {
-            session.close();
+    private void handleCompressedMessage(byte[] frame, EventClock.Frame arrival) {
+        if (decompressors == null) {
+            logger.warn("Skipping binary message, compression is disabled");
+            return;
         }
+        List<JetstreamEventDecoder.Post> posts = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            ZstdFrameDecompressor decompressor = decompressors.get();
+            int length = decompressor.decompress(frame);
+            decoder.decode(decompressor.buffer(), 0, length, posts::add, this::countRejection);
+        } catch (IOException | RuntimeException e) {
+            framesMalformed.increment();
+            logger.warn("Skipping malformed compressed message: {}", e.getMessage());
+        }
+        decodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        handlePosts(posts, arrival);
     }
 
-    private void connect() throws Exception {
-        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-        this.session = container.connectToServer(this, endpointURI);
-    }
+    private void handlePosts(List<JetstreamEventDecoder.Post> posts, EventClock.Frame arrival) {
+        if (posts.isEmpty()) {
+            return;
+        }
 
-    private void tryReconnect() {
-        new Thread(() -> {
-            int attempts = 0;
-            while (!manuallyClosed) {
-                try {
-                    Thread.sleep(backoffDelay(++attempts));
-                    logger.info("Trying to reconnect... attempt {}", attempts);
-                    connect();
-                    logger.info("Reconnected!");
-                    break;
-                } catch (Exception e) {
-                    logger.warn("Reconnect failed: {}", e.getMessage());
-                }
+        // The whole frame is deduplicated in one call
+        List<Boolean> isNew = deduplicationService.areNewMessages(
+                posts.stream().map(JetstreamEventDecoder.Post::uri).toList());
+        for (int i = 0; i < posts.size(); i++) {
+            if (!isNew.get(i)) {
+                eventsDuplicate.increment();
+                logger.debug("Skipping duplicate message");
+                continue;
             }
-        }).start();
+            JetstreamEventDecoder.Post post = posts.get(i);
+            // Buckets before the watermark may already be scored and rolled up
+            long eventMillis = EventClock.eventMillis(post.timeUs());
+            if (!eventClock.accept(arrival, eventMillis)) {
+                eventsLate.increment();
+                continue;
+            }
+            try {
+                processor.process(post.text(), post.mentions(), eventMillis);
+            } catch (RuntimeException e) {
+                // Nothing was queued, the event must not hold the watermark back
+                eventClock.release(eventMillis);
+                throw e;
+            }
+            eventsProcessed.increment();
+        }
+        if (source.resumable()) {
+            posts.forEach(post -> cursor.advance(post.timeUs()));
+        }
     }
 
-    private long backoffDelay(int attempts) {
-        return Math.min(30_000, 2000L * attempts); // max 30s
+    private void countRejection(JetstreamEventDecoder.Rejection rejection) {
+        eventsRejected.get(rejection).increment();
+    }
+
+    private static ZstdDictDecompress loadDictionary(ResourceLoader resourceLoader, String location) {
+        try (InputStream inputStream = resourceLoader.getResource(location).getInputStream()) {
+            return new ZstdDictDecompress(inputStream.readAllBytes());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load the Jetstream zstd dictionary from " + location, e);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.redis.om.partthreetopk;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the {@code time_us} of the latest processed Jetstream event and checkpoints it to Redis, so a reconnect
+ * or restart resumes with {@code cursor=} instead of losing the events in between.
+ * <p>
+ * Frames are processed by several workers, so the latest processed event is not a strict low-water mark. The
+ * resume cursor is therefore rewound by a few seconds; the overlap is absorbed by deduplication. Replay is capped
+ * at {@code jetstream.cursor.max-replay-seconds} so a long outage never turns into an unbounded backfill.
+ */
+@Component
+public class JetstreamCursor {
+
+    private static final Logger logger = LoggerFactory.getLogger(JetstreamCursor.class);
+    private static final String CURSOR_KEY = "jetstream:cursor";
+
+    private final RedisService redisService;
+    private final long rewindUs;
+    private final long maxReplayUs;
+    private final AtomicLong lastTimeUs = new AtomicLong();
+
+    private long checkpointedTimeUs;
+
+    public JetstreamCursor(RedisService redisService,
+                           @Value("${jetstream.cursor.rewind-seconds:5}") long rewindSeconds,
+                           @Value("${jetstream.cursor.max-replay-seconds:600}") long maxReplaySeconds) {
+        this.redisService = redisService;
+        this.rewindUs = TimeUnit.SECONDS.toMicros(rewindSeconds);
+        this.maxReplayUs = TimeUnit.SECONDS.toMicros(maxReplaySeconds);
+    }
+
+    public void advance(long timeUs) {
+        lastTimeUs.accumulateAndGet(timeUs, Math::max);
+    }
+
+    @Scheduled(fixedDelayString = "${jetstream.cursor.checkpoint-interval-ms:5000}")
+    @PreDestroy
+    public synchronized void checkpoint() {
+        long timeUs = lastTimeUs.get();
+        if (timeUs <= checkpointedTimeUs) {
+            return;
+        }
+        redisService.set(CURSOR_KEY, Long.toString(timeUs));
+        checkpointedTimeUs = timeUs;
+    }
+
+    /**
+     * Returns the endpoint with a {@code cursor} parameter to resume from, or the endpoint unchanged when
+     * there is nothing to resume from yet.
+     */
+    public URI resumeFrom(URI endpoint) {
+        long timeUs = lastTimeUs.get();
+        if (timeUs == 0) {
+            // Nothing processed by this instance yet, pick up where the previous run stopped
+            String stored = redisService.get(CURSOR_KEY);
+            timeUs = stored == null ? 0 : Long.parseLong(stored);
+        }
+        if (timeUs == 0) {
+            return endpoint;
+        }
+
+        long cursor = timeUs - rewindUs;
+        long earliest = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now()) - maxReplayUs;
+        if (cursor < earliest) {
+            logger.warn("Checkpoint is older than {}s, skipping the events before", TimeUnit.MICROSECONDS.toSeconds(maxReplayUs));
+            cursor = earliest;
+        }
+
+        StringJoiner query = new StringJoiner("&");
+        if (endpoint.getRawQuery() != null) {
+            Arrays.stream(endpoint.getRawQuery().split("&"))
+                    .filter(param -> !param.startsWith("cursor="))
+                    .forEach(query::add);
+        }
+        query.add("cursor=" + cursor);
+        logger.info("Resuming Jetstream from cursor {}", cursor);
+        return URI.create(endpoint.getScheme() + "://" + endpoint.getRawAuthority() + endpoint.getRawPath() + "?" + query);
+    }
+}
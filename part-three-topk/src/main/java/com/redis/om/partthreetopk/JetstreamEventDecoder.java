@@ -0,0 +1,256 @@
+package com.redis.om.partthreetopk;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming decoder for Jetstream frames. Instead of binding every event into the full {@link Event} graph it
+ * reads only {@code did}, {@code time_us}, {@code commit.rkey}, {@code commit.record.text},
+ * {@code commit.record.langs} and the mention facets of {@code commit.record.facets}, and skips the rest of an
+ * event as soon as it is known to be irrelevant (not a commit, no record, or not English).
+ * A frame may hold several newline-separated events.
+ */
+public class JetstreamEventDecoder {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final String MENTION_FEATURE = "app.bsky.richtext.facet#mention";
+
+    public record Post(String did, String rkey, String text, long timeUs, List<Mention> mentions) {
+        public String uri() {
+            return "at://" + did + "/app.bsky.feed.post/" + rkey;
+        }
+    }
+
+    /**
+     * A mention facet: the UTF-8 byte range of the post text, e.g. {@code @alice.bsky.social}, linking to an account.
+     */
+    public record Mention(int byteStart, int byteEnd) {
+    }
+
+    /**
+     * Why an event was skipped without producing a {@link Post}.
+     */
+    public enum Rejection { NOT_COMMIT, NO_RECORD, NO_TEXT, NOT_ENGLISH }
+
+    private static final Consumer<Rejection> IGNORE = rejection -> {};
+
+    public void decode(String frame, Consumer<Post> consumer) throws IOException {
+        decode(frame, consumer, IGNORE);
+    }
+
+    public void decode(String frame, Consumer<Post> consumer, Consumer<Rejection> rejected) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(frame)) {
+            decode(parser, consumer, rejected);
+        }
+    }
+
+    /**
+     * Decodes UTF-8 encoded events straight from a byte buffer, e.g. a decompressed frame.
+     */
+    public void decode(byte[] frame, int offset, int length, Consumer<Post> consumer) throws IOException {
+        decode(frame, offset, length, consumer, IGNORE);
+    }
+
+    public void decode(byte[] frame, int offset, int length, Consumer<Post> consumer,
+                       Consumer<Rejection> rejected) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(frame, offset, length)) {
+            decode(parser, consumer, rejected);
+        }
+    }
+
+    private void decode(JsonParser parser, Consumer<Post> consumer, Consumer<Rejection> rejected) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            Post post = readEvent(parser, rejected);
+            if (post != null) {
+                consumer.accept(post);
+            }
+        }
+    }
+
+    // Every rejected event is reported exactly once, by the reader that rejects it
+    private Post readEvent(JsonParser parser, Consumer<Rejection> rejected) throws IOException {
+        String did = null;
+        long timeUs = 0;
+        Post commit = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "did" -> did = parser.getValueAsString();
+                case "time_us" -> timeUs = parser.getValueAsLong();
+                case "kind" -> {
+                    if (!"commit".equals(parser.getText())) return reject(parser, rejected, Rejection.NOT_COMMIT);
+                }
+                case "commit" -> {
+                    if (value != JsonToken.START_OBJECT) return reject(parser, rejected, Rejection.NOT_COMMIT);
+                    if ((commit = readCommit(parser, rejected)) == null) return skipRest(parser);
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (commit == null) {
+            rejected.accept(Rejection.NOT_COMMIT);
+            return null;
+        }
+        return new Post(did, commit.rkey(), commit.text(), timeUs, commit.mentions());
+    }
+
+    private Post readCommit(JsonParser parser, Consumer<Rejection> rejected) throws IOException {
+        String rkey = null;
+        Post record = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "rkey" -> rkey = parser.getValueAsString();
+                case "record" -> {
+                    if (value != JsonToken.START_OBJECT) return reject(parser, rejected, Rejection.NO_RECORD);
+                    if ((record = readRecord(parser, rejected)) == null) return skipRest(parser);
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (record == null) {
+            rejected.accept(Rejection.NO_RECORD);
+            return null;
+        }
+        return new Post(null, rkey, record.text(), 0, record.mentions());
+    }
+
+    // Returns the post text and mentions, or null when the record has no text or is not in English
+    private Post readRecord(JsonParser parser, Consumer<Rejection> rejected) throws IOException {
+        String text = null;
+        List<Mention> mentions = List.of();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "text" -> text = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                case "langs" -> {
+                    if (value == JsonToken.START_ARRAY && !containsEnglish(parser)) {
+                        return reject(parser, rejected, Rejection.NOT_ENGLISH);
+                    }
+                }
+                case "facets" -> {
+                    if (value == JsonToken.START_ARRAY) mentions = readMentions(parser);
+                    else parser.skipChildren();
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (text == null) {
+            rejected.accept(Rejection.NO_TEXT);
+            return null;
+        }
+        return new Post(null, null, text, 0, mentions);
+    }
+
+    // A facet is an index (byteStart, byteEnd) and features, each tagged with a $type
+    private static List<Mention> readMentions(JsonParser parser) throws IOException {
+        List<Mention> mentions = List.of();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            int byteStart = -1;
+            int byteEnd = -1;
+            boolean mention = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("index".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String indexField = parser.currentName();
+                        parser.nextToken();
+                        switch (indexField) {
+                            case "byteStart" -> byteStart = parser.getValueAsInt(-1);
+                            case "byteEnd" -> byteEnd = parser.getValueAsInt(-1);
+                            default -> parser.skipChildren();
+                        }
+                    }
+                } else if ("features".equals(field) && value == JsonToken.START_ARRAY) {
+                    mention = containsMention(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (mention && byteStart >= 0 && byteStart < byteEnd) {
+                if (mentions.isEmpty()) mentions = new ArrayList<>(2);
+                mentions.add(new Mention(byteStart, byteEnd));
+            }
+        }
+        return mentions;
+    }
+
+    private static boolean containsMention(JsonParser parser) throws IOException {
+        boolean mention = false;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("$type".equals(field) && MENTION_FEATURE.equals(parser.getValueAsString())) {
+                    mention = true;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return mention;
+    }
+
+    private static boolean containsEnglish(JsonParser parser) throws IOException {
+        boolean english = false;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.VALUE_STRING && "en".equals(parser.getText())) {
+                english = true;
+            }
+            parser.skipChildren();
+        }
+        return english;
+    }
+
+    private static <T> T reject(JsonParser parser, Consumer<Rejection> rejected, Rejection rejection) throws IOException {
+        rejected.accept(rejection);
+        return skipRest(parser);
+    }
+
+    // Skips the remaining fields of the object being read and rejects it
+    private static <T> T skipRest(JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        if (token == null) {
+            throw new IOException("Unexpected end of Jetstream frame");
+        }
+        return null;
+    }
+}
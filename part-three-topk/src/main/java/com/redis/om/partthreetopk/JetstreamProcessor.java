@@ -1,88 +1,72 @@
 package com.redis.om.partthreetopk;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ResourceLoader;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Turns the text of a post into n-gram counts, see {@link NgramExtractor}. Words are interned into the shared
+ * {@link TermDictionary} straight from the tokenizer's buffer and counted by ID, so a post allocates no String
+ * for a term the dictionary already knows.
+ */
 @Service
 public class JetstreamProcessor {
 
-    private final static Logger logger = LoggerFactory.getLogger(JetstreamProcessor.class);
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final ResourceLoader resourceLoader;
-    private final RedisService redisService;
+    private static final Logger logger = LoggerFactory.getLogger(JetstreamProcessor.class);
 
-    public JetstreamProcessor(ResourceLoader resourceLoader, RedisService redisService) {
-        this.resourceLoader = resourceLoader;
-        this.redisService = redisService;
-        loadStopwords();
-    }
-
-    public void process(String rawText) {
-        List<String> words = Arrays.stream(rawText.split("\\s+"))
-                .map(this::cleanWord)
-                .filter(w -> !w.isEmpty() && !redisService.isInBloomFilter("stopwords-bf", w))
-                .toList();
-
-        String timeBucket = getCurrentTimeBucket();
-        ensureCms(timeBucket);
-        processWords(words, timeBucket);
-    }
-
-    private String cleanWord(String word) {
-        return word.replaceAll("(?<!^)#|[\\p{Punct}\\p{S}&&[^#]]", "")
-                .replaceAll("^\\d+$", "")
-                .toLowerCase()
-                .trim();
-    }
-
-    private String getCurrentTimeBucket() {
-        return LocalDateTime.now().withSecond(0).withNano(0).toString();
-    }
+    private final NgramExtractor ngramExtractor;
+    private final MetricsBatcher metricsBatcher;
+    private final int dictionaryMaxSize;
+    private final AtomicReference<TermDictionary> dictionary;
+    private final Timer processTimer;
 
-    private void processWords(List<String> words, String timeBucket) {
-        for (int i = 0; i < words.size(); i++) {
-            String word = words.get(i);
-            updateMetrics(word, timeBucket);
-
-            if (i > 0) updateMetrics(words.get(i - 1) + " " + word, timeBucket);
-            if (i < words.size() - 1) updateMetrics(word + " " + words.get(i + 1), timeBucket);
+    public JetstreamProcessor(NgramExtractor ngramExtractor, MetricsBatcher metricsBatcher,
+                              @Value("${ingest.terms.dictionary-max-size:1000000}") int dictionaryMaxSize,
+                              MeterRegistry meterRegistry) {
+        // Term counts pack three word IDs in a long
+        if (dictionaryMaxSize <= 0 || dictionaryMaxSize > TermCounts.MAX_TERMS) {
+            throw new IllegalArgumentException("ingest.terms.dictionary-max-size must be between 1 and "
+                    + TermCounts.MAX_TERMS + ", got " + dictionaryMaxSize);
         }
+        this.ngramExtractor = ngramExtractor;
+        this.metricsBatcher = metricsBatcher;
+        this.dictionaryMaxSize = dictionaryMaxSize;
+        this.dictionary = new AtomicReference<>(new TermDictionary(dictionaryMaxSize));
+        this.processTimer = meterRegistry.timer("ingest.process");
     }
 
-    private void updateMetrics(String term, String timeBucket) {
-        redisService.sAdd("words-set", term);
-        redisService.zIncrBy("words-bucket-zset:" + timeBucket, term, 1);
-        redisService.cmsIncrBy("words-bucket-cms:" + timeBucket, term, 1);
-    }
-
-    private void ensureCms(String timeBucket) {
-        String key = "words-bucket-cms:" + timeBucket;
-        if (!redisService.exists(key)) {
-            redisService.createCms(key, 2000, 10);
-        }
+    /**
+     * Counts the n-grams of a post in the buckets of its event time, in epoch milliseconds.
+     */
+    public void process(String rawText, List<JetstreamEventDecoder.Mention> mentions, long eventMillis) {
+        long start = System.nanoTime();
+        metricsBatcher.submit(eventMillis, countTerms(rawText, mentions));
+        processTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 
-    private void loadStopwords() {
-        try {
-            var resource = resourceLoader.getResource("classpath:stopwords-en.json");
-            List<String> words = objectMapper.readValue(resource.getInputStream(), List.class);
+    TermCounts countTerms(String rawText, List<JetstreamEventDecoder.Mention> mentions) {
+        while (true) {
+            TermDictionary current = dictionary.get();
+            TermCounts termCounts = ngramExtractor.extract(rawText, mentions, current);
+            if (termCounts != null) {
+                return termCounts;
+            }
 
-            if (!redisService.exists("stopwords-bf")) {
-                redisService.createBloomFilter("stopwords-bf", 1300, 0.01);
-                redisService.addMultiToBloomFilter("stopwords-bf", words.toArray(new String[0]));
-                redisService.sAdd("stopwords-set", words.toArray(new String[0]));
-                logger.info("Stopwords loaded: {}", words.size());
+            // Counts already queued keep their own dictionary, so a full one is simply replaced
+            if (dictionary.compareAndSet(current, new TermDictionary(dictionaryMaxSize))) {
+                logger.info("Term dictionary reached {} terms, starting a new one", dictionaryMaxSize);
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load stopwords", e);
         }
     }
+
+    TermDictionary dictionary() {
+        return dictionary.get();
+    }
 }
@@ -0,0 +1,74 @@
+package com.redis.om.partthreetopk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.params.ZAddParams;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the keys written by ingestion, so the dashboard never has to SCAN the keyspace. Every key family
+ * (e.g. {@code words-bucket-cms:} or {@code words-bucket-cms:hour:}) has a ZSET {@code key-index:<family>} of its
+ * keys scored by the time they were first written, and {@code key-index:families} lists the families. Entries are
+ * trimmed once the keys they point to have expired, whenever a key of the family is registered.
+ */
+@Component
+public class KeyRegistry {
+
+    static final String INDEX_PREFIX = "key-index:";
+    static final String FAMILIES_KEY = INDEX_PREFIX + "families";
+    private static final int MAX_REMEMBERED = 10_000;
+    // Keys are first indexed when created but their expiry is refreshed by later writes
+    private static final long TRIM_GRACE_SECONDS = 86_400;
+
+    private final RedisService redisService;
+    private final long minuteTtlSeconds;
+    private final Set<String> registered = ConcurrentHashMap.newKeySet();
+
+    public KeyRegistry(RedisService redisService,
+                       @Value("${retention.minute-ttl-seconds:7200}") long minuteTtlSeconds) {
+        this.redisService = redisService;
+        this.minuteTtlSeconds = minuteTtlSeconds;
+    }
+
+    /**
+     * Registers a key that is its own family, like {@code stopwords-bf}.
+     */
+    public void register(String key) {
+        register(key, "", Long.MAX_VALUE);
+    }
+
+    /**
+     * Registers a per-minute key, which lives as long as minute buckets are retained.
+     */
+    public void register(String family, String suffix) {
+        register(family, suffix, minuteTtlSeconds);
+    }
+
+    /**
+     * Registers {@code family + suffix}, a key that expires after {@code ttlSeconds}.
+     * Keys already registered by this instance cost a set lookup.
+     */
+    public void register(String family, String suffix, long ttlSeconds) {
+        String key = family + suffix;
+        if (registered.contains(key)) {
+            return;
+        }
+        if (registered.size() >= MAX_REMEMBERED) {
+            registered.clear();
+        }
+
+        long now = Instant.now().getEpochSecond();
+        String indexKey = INDEX_PREFIX + family;
+        redisService.pipelined(pipeline -> {
+            pipeline.sadd(FAMILIES_KEY, family);
+            pipeline.zadd(indexKey, now, key, ZAddParams.zAddParams().nx());
+            if (ttlSeconds < now) {
+                pipeline.zremrangeByScore(indexKey, Double.NEGATIVE_INFINITY, now - ttlSeconds - TRIM_GRACE_SECONDS);
+            }
+        });
+        registered.add(key);
+    }
+}
@@ -0,0 +1,220 @@
+package com.redis.om.partthreetopk;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a local Count-Min Sketch for every open minute and pushes the minute's heavy hitters to the Redis bucket
+ * every few seconds. A minute is open until the {@link EventClock} watermark has passed its end, so posts arriving
+ * slightly out of order near a minute boundary still share one local sketch per minute.
+ * <p>
+ * RedisBloom cannot load a sketch built outside of Redis, so instead of CMS.MERGE a {@link SpaceSaving} summary
+ * picks the heavy hitter candidates of the minute, and a flush writes one CMS.INCRBY of at most {@code top-k}
+ * terms: the growth of each candidate's estimate (the smaller of the sketch's and the summary's) since the last
+ * push, for candidates estimated at {@code min-count} or more. Tail terms never reach the Redis bucket, so a flush
+ * costs the same however large the vocabulary, but a CMS.QUERY of the bucket returns 0 for any term outside the
+ * pushed candidates. Increments are additive, so several ingest instances can share the same bucket.
+ * <p>
+ * Counts are not added lock-free on the ingest threads: the {@link MetricsBatcher} flusher hands over each batch's
+ * per-minute counts, and each minute's state is only updated inside {@link ConcurrentHashMap#compute}, which also
+ * serializes it with the push that closes the minute.
+ */
+@Component
+public class LocalCmsAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalCmsAggregator.class);
+
+    private final RedisService redisService;
+    private final KeyRegistry keyRegistry;
+    private final EventClock eventClock;
+    private final boolean enabled;
+    private final int capacity;
+    private final int topK;
+    private final long minCount;
+    private final Map<String, MinuteState> open = new ConcurrentHashMap<>();
+    private final ReentrantLock pushLock = new ReentrantLock();
+
+    private final Timer pushTimer;
+
+    private String lastCmsBucket;
+
+    public LocalCmsAggregator(RedisService redisService,
+                              KeyRegistry keyRegistry,
+                              EventClock eventClock,
+                              @Value("${ingest.cms.local.enabled:false}") boolean enabled,
+                              @Value("${ingest.cms.local.capacity:5000}") int capacity,
+                              @Value("${ingest.cms.local.top-k:1000}") int topK,
+                              @Value("${ingest.cms.local.min-count:5}") long minCount,
+                              MeterRegistry meterRegistry) {
+        this.redisService = redisService;
+        this.keyRegistry = keyRegistry;
+        this.eventClock = eventClock;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.topK = topK;
+        this.minCount = minCount;
+        this.pushTimer = meterRegistry.timer("redis.latency", "op", "cms_push");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void add(String timeBucket, Map<String, Long> termCounts) {
+        // Atomic with the removal of a closing minute: counts land either in the pushed state or in a new one
+        open.compute(timeBucket, (bucket, state) -> {
+            MinuteState current = state != null ? state : new MinuteState(bucket, capacity);
+            termCounts.forEach(current::add);
+            return current;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${ingest.cms.local.flush-interval-ms:5000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        pushLock.lock();
+        try {
+            push(eventClock.watermarkMillis());
+        } catch (RuntimeException e) {
+            logger.error("Failed to push local CMS: {}", e.getMessage());
+        } finally {
+            pushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+
+        pushLock.lock();
+        try {
+            // Nothing arrives anymore, every minute is closed
+            push(Long.MAX_VALUE);
+        } catch (RuntimeException e) {
+            logger.error("Failed to push local CMS: {}", e.getMessage());
+        } finally {
+            pushLock.unlock();
+        }
+    }
+
+    // Pushes every open minute and forgets the ones that end before the watermark
+    private void push(long watermarkMillis) {
+        for (MinuteState state : List.copyOf(open.values())) {
+            Map<String, Long> increments = new HashMap<>();
+            if (state.endMillis <= watermarkMillis) {
+                // Atomic with add: once removed, no ingest thread reaches the state, later counts open a new one
+                open.remove(state.timeBucket);
+                increments.putAll(state.takeIncrements(topK, minCount));
+            } else {
+                open.computeIfPresent(state.timeBucket, (bucket, current) -> {
+                    increments.putAll(current.takeIncrements(topK, minCount));
+                    return current;
+                });
+            }
+
+            try {
+                push(state.timeBucket, increments);
+            } catch (RuntimeException e) {
+                restore(state, increments);
+                throw e;
+            }
+        }
+    }
+
+    // A failed push is retried on the next flush, with the minute put back if it was closing
+    private void restore(MinuteState state, Map<String, Long> increments) {
+        open.compute(state.timeBucket, (bucket, current) -> {
+            if (current != null && current != state) {
+                logger.warn("Dropping {} local CMS increments of reopened bucket {}", increments.size(), bucket);
+                return current;
+            }
+            state.restoreIncrements(increments);
+            return state;
+        });
+    }
+
+    private void push(String timeBucket, Map<String, Long> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+
+        String key = "words-bucket-cms:" + timeBucket;
+        ensureCms(timeBucket);
+        pushTimer.record(() -> redisService.pipelined(pipeline -> pipeline.cmsIncrBy(key, increments)));
+        logger.debug("Pushed {} local CMS terms to {}", increments.size(), key);
+    }
+
+    private void ensureCms(String timeBucket) {
+        if (timeBucket.equals(lastCmsBucket)) {
+            return;
+        }
+
+        String key = "words-bucket-cms:" + timeBucket;
+        if (!redisService.exists(key)) {
+            try {
+                redisService.createCms(key, MetricsBatcher.CMS_WIDTH, MetricsBatcher.CMS_DEPTH);
+            } catch (JedisDataException e) {
+                logger.debug("Count-min sketch {} was created by another instance", key);
+            }
+        }
+        keyRegistry.register("words-bucket-cms:", timeBucket);
+        lastCmsBucket = timeBucket;
+    }
+
+    // Only accessed inside a ConcurrentHashMap.compute of its bucket, or by the flush once removed from the map
+    private static class MinuteState {
+        final String timeBucket;
+        final long endMillis;
+        final LocalCountMinSketch sketch = new LocalCountMinSketch(MetricsBatcher.CMS_WIDTH, MetricsBatcher.CMS_DEPTH);
+        final SpaceSaving candidates;
+        // Estimate already pushed per term; estimates only grow, so the next push sends the difference
+        final Map<String, Long> pushed = new HashMap<>();
+
+        MinuteState(String timeBucket, int capacity) {
+            this.timeBucket = timeBucket;
+            this.endMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(timeBucket) + 60);
+            this.candidates = new SpaceSaving(capacity);
+        }
+
+        void add(String term, long count) {
+            sketch.add(term, count);
+            candidates.add(term, count);
+        }
+
+        Map<String, Long> takeIncrements(int topK, long minCount) {
+            Map<String, Long> increments = new HashMap<>();
+            for (SpaceSaving.Counter candidate : candidates.top(topK)) {
+                long estimate = Math.min(candidate.count(), sketch.estimate(candidate.term()));
+                long increment = estimate - pushed.getOrDefault(candidate.term(), 0L);
+                if (estimate >= minCount && increment > 0) {
+                    increments.put(candidate.term(), increment);
+                    pushed.put(candidate.term(), estimate);
+                }
+            }
+            return increments;
+        }
+
+        void restoreIncrements(Map<String, Long> increments) {
+            increments.forEach((term, increment) -> pushed.merge(term, -increment, Long::sum));
+        }
+    }
+}
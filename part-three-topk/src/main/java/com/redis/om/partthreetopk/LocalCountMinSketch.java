@@ -0,0 +1,40 @@
+package com.redis.om.partthreetopk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * On-heap Count-Min Sketch with the same dimensions as the Redis buckets.
+ * Counters live in an {@link AtomicLongArray}, so concurrent updates are lock-free.
+ */
+public class LocalCountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final AtomicLongArray counters;
+
+    public LocalCountMinSketch(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(width * depth);
+    }
+
+    public void add(CharSequence item, long count) {
+        long hash = Hashing.hash64(item);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            counters.getAndAdd(row * width + Math.floorMod(h1 + row * h2, width), count);
+        }
+    }
+
+    public long estimate(CharSequence item) {
+        long hash = Hashing.hash64(item);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(row * width + Math.floorMod(h1 + row * h2, width)));
+        }
+        return min;
+    }
+}
@@ -0,0 +1,165 @@
+package com.redis.om.partthreetopk;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded handoff between the WebSocket receive callback and message processing.
+ * Frames are queued by the socket thread and handled by a fixed number of virtual worker threads, so a slow
+ * Redis call never stalls the socket read loop. When the queue is full the frame is either dropped or the
+ * receiver blocks, depending on {@code ingest.dispatch.overflow-policy}.
+ * <p>
+ * On shutdown the workers finish the frames already queued, for up to {@code ingest.dispatch.shutdown-timeout-ms},
+ * before they are interrupted.
+ */
+@Component
+public class MessageDispatcher {
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageDispatcher.class);
+    private static final long POLL_MILLIS = 100;
+
+    private final BlockingQueue<Runnable> queue;
+    private final int workerCount;
+    private final OverflowPolicy overflowPolicy;
+    private final Duration shutdownTimeout;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running;
+
+    public MessageDispatcher(@Value("${ingest.dispatch.queue-capacity:10000}") int queueCapacity,
+                             @Value("${ingest.dispatch.workers:8}") int workerCount,
+                             @Value("${ingest.dispatch.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+                             @Value("${ingest.dispatch.shutdown-timeout-ms:10000}") long shutdownTimeoutMs,
+                             MeterRegistry meterRegistry) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workerCount = workerCount;
+        this.overflowPolicy = overflowPolicy;
+        this.shutdownTimeout = Duration.ofMillis(shutdownTimeoutMs);
+
+        Gauge.builder("ingest.dispatch.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        FunctionCounter.builder("ingest.dispatch.frames", dispatched, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("ingest.dispatch.dropped", dropped, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("ingest.dispatch.failed", failed, AtomicLong::get).register(meterRegistry);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("ingest-worker-" + i).start(this::work));
+        }
+        logger.info("Started {} ingest workers ({} on overflow)", workerCount, overflowPolicy);
+    }
+
+    /**
+     * Queues the handling of one received frame, and returns whether it was queued.
+     */
+    public boolean dispatch(Runnable task) {
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        } else if (!queue.offer(task)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        dispatched.incrementAndGet();
+        return true;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    public long failedCount() {
+        return failed.get();
+    }
+
+    @Scheduled(fixedRate = 60_000)
+    public void logStats() {
+        logger.info("Ingest queue depth: {}, dispatched: {}, dropped: {}, failed: {}",
+                queue.size(), dispatched.get(), dropped.get(), failed.get());
+    }
+
+    /**
+     * Stops the workers once the queued frames are processed, interrupting them if that takes longer than the
+     * shutdown timeout. The frames should no longer be dispatched by then.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        List<Thread> stopping;
+        synchronized (this) {
+            running = false;
+            stopping = List.copyOf(workers);
+            workers.clear();
+        }
+        if (stopping.isEmpty()) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        List<Thread> stuck = new ArrayList<>();
+        for (Thread worker : stopping) {
+            long remaining = Math.max(deadline - System.nanoTime(), 0);
+            if (!worker.join(Duration.ofNanos(remaining))) {
+                stuck.add(worker);
+            }
+        }
+        if (!stuck.isEmpty()) {
+            logger.warn("Ingest workers did not finish within {}, interrupting them with {} frames still queued",
+                    shutdownTimeout, queue.size());
+            stuck.forEach(Thread::interrupt);
+        }
+    }
+
+    private void work() {
+        // Keep going after stop() until the queue is drained
+        while (running || !queue.isEmpty()) {
+            Runnable task;
+            try {
+                task = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == null) {
+                continue;
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                logger.warn("Failed to process message: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.redis.om.partthreetopk;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the term counts of each processed post and writes them to Redis in a single pipeline,
+ * either when enough posts are queued or when the flush interval elapses. Counts go to the minute bucket and to
+ * the {@link SlidingWindow} slot the post falls in; the minute's heaviest terms are summarized by the
+ * {@link HeavyHitterTracker} instead of being written per occurrence.
+ * Producers block when the queue is full, so a slow Redis slows down ingestion instead of exhausting memory.
+ * A batch whose write fails is not retried; its posts are counted in {@code ingest.batch.dropped}.
+ * Every post releases its hold on the {@link EventClock} watermark once its batch is written.
+ */
+@Component
+public class MetricsBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsBatcher.class);
+    static final int CMS_WIDTH = 2000;
+    static final int CMS_DEPTH = 10;
+
+    private final RedisService redisService;
+    private final LocalCmsAggregator localCmsAggregator;
+    private final HeavyHitterTracker heavyHitterTracker;
+    private final KeyRegistry keyRegistry;
+    private final SlidingWindow slidingWindow;
+    private final EventClock eventClock;
+    private final BlockingQueue<PostMetrics> queue;
+    private final int flushSize;
+    private final long vocabularyTtlSeconds;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final DistributionSummary batchSize;
+    private final Counter postsDropped;
+    private final Timer writeTimer;
+
+    private String lastCmsBucket;
+    private String lastSlotKey;
+
+    public MetricsBatcher(RedisService redisService,
+                          LocalCmsAggregator localCmsAggregator,
+                          HeavyHitterTracker heavyHitterTracker,
+                          KeyRegistry keyRegistry,
+                          SlidingWindow slidingWindow,
+                          EventClock eventClock,
+                          @Value("${ingest.batch.flush-size:500}") int flushSize,
+                          @Value("${ingest.batch.queue-capacity:10000}") int queueCapacity,
+                          @Value("${ingest.vocabulary.ttl-seconds:86400}") long vocabularyTtlSeconds,
+                          MeterRegistry meterRegistry) {
+        this.redisService = redisService;
+        this.localCmsAggregator = localCmsAggregator;
+        this.heavyHitterTracker = heavyHitterTracker;
+        this.keyRegistry = keyRegistry;
+        this.slidingWindow = slidingWindow;
+        this.eventClock = eventClock;
+        this.flushSize = flushSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.vocabularyTtlSeconds = vocabularyTtlSeconds;
+        this.batchSize = meterRegistry.summary("ingest.batch.posts");
+        this.postsDropped = meterRegistry.counter("ingest.batch.dropped");
+        this.writeTimer = meterRegistry.timer("redis.latency", "op", "metrics_write");
+        Gauge.builder("ingest.batch.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    /**
+     * Queues the term counts of a post that happened at {@code eventMillis}, see {@link EventClock}. The post's
+     * hold on the watermark is released once it is written, or right away if there is nothing to write.
+     */
+    public void submit(long eventMillis, TermCounts termCounts) {
+        if (termCounts.isEmpty()) {
+            eventClock.release(eventMillis);
+            return;
+        }
+        String timeBucket = EventClock.minuteBucket(eventMillis);
+        String slotKey = slidingWindow.slotKey(slidingWindow.slotStart(eventMillis));
+
+        try {
+            queue.put(new PostMetrics(eventMillis, timeBucket, slotKey, termCounts));
+        } catch (InterruptedException e) {
+            eventClock.release(eventMillis);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (queue.size() >= flushSize) {
+            flush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingest.batch.flush-interval-ms:200}")
+    public void flush() {
+        // Only one flusher at a time; whoever holds the lock keeps draining until the queue is empty
+        if (!flushLock.tryLock()) {
+            return;
+        }
+
+        try {
+            List<PostMetrics> batch = new ArrayList<>(flushSize);
+            while (queue.drainTo(batch, flushSize) > 0) {
+                try {
+                    write(batch);
+                } catch (RuntimeException e) {
+                    // The batch's counts are lost; the rest of the queue waits for the next flush
+                    postsDropped.increment(batch.size());
+                    logger.error("Dropped a metrics batch of {} posts: {}", batch.size(), e.getMessage());
+                    break;
+                } finally {
+                    batch.forEach(post -> eventClock.release(post.eventMillis()));
+                    batch.clear();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    private void write(List<PostMetrics> batch) {
+        // Counted by term ID; term Strings are built once per distinct term of the batch
+        Map<String, Map<TermDictionary, TermCounts>> idCountsByBucket = new HashMap<>();
+        Map<String, Map<TermDictionary, TermCounts>> idCountsBySlot = new HashMap<>();
+        for (PostMetrics post : batch) {
+            merge(idCountsByBucket, post.timeBucket(), post.termCounts());
+            merge(idCountsBySlot, post.slotKey(), post.termCounts());
+        }
+        Map<String, Map<String, Long>> countsByBucket = materialize(idCountsByBucket);
+        Map<String, Map<String, Long>> countsBySlot = materialize(idCountsBySlot);
+
+        boolean writeCms = !localCmsAggregator.isEnabled();
+        if (writeCms) {
+            countsByBucket.keySet().forEach(this::ensureCms);
+        }
+        countsByBucket.forEach((timeBucket, counts) -> {
+            keyRegistry.register("words-set:", timeBucket);
+            heavyHitterTracker.add(timeBucket, counts);
+            // In local mode CMS counts are aggregated in memory and pushed by the aggregator
+            if (!writeCms) {
+                localCmsAggregator.add(timeBucket, counts);
+            }
+        });
+        countsBySlot.keySet().forEach(this::ensureSlotCms);
+
+        batchSize.record(batch.size());
+        writeTimer.record(() -> redisService.pipelined(pipeline -> {
+            countsByBucket.forEach((timeBucket, counts) -> {
+                // Vocabulary is tracked per bucket and expires, so it doesn't grow with uptime
+                String vocabularyKey = "words-set:" + timeBucket;
+                pipeline.sadd(vocabularyKey, counts.keySet().toArray(new String[0]));
+                pipeline.expire(vocabularyKey, vocabularyTtlSeconds);
+                if (writeCms) {
+                    pipeline.cmsIncrBy("words-bucket-cms:" + timeBucket, counts);
+                }
+            });
+            countsBySlot.forEach(pipeline::cmsIncrBy);
+        }));
+
+        logger.debug("Flushed {} posts into {} buckets", batch.size(), countsByBucket.size());
+    }
+
+    // Counts are grouped by dictionary too, since IDs of a replaced dictionary don't match the new one's
+    private static void merge(Map<String, Map<TermDictionary, TermCounts>> countsByKey, String key, TermCounts counts) {
+        countsByKey.computeIfAbsent(key, k -> new IdentityHashMap<>())
+                .computeIfAbsent(counts.dictionary(), dictionary -> new TermCounts(dictionary, 4096))
+                .addAll(counts);
+    }
+
+    private static Map<String, Map<String, Long>> materialize(Map<String, Map<TermDictionary, TermCounts>> countsByKey) {
+        Map<String, Map<String, Long>> materialized = new HashMap<>();
+        countsByKey.forEach((key, countsByDictionary) -> {
+            Map<String, Long> counts = new HashMap<>();
+            countsByDictionary.values().forEach(termCounts ->
+                    termCounts.toMap().forEach((term, count) -> counts.merge(term, count, Long::sum)));
+            materialized.put(key, counts);
+        });
+        return materialized;
+    }
+
+    private void ensureCms(String timeBucket) {
+        if (timeBucket.equals(lastCmsBucket)) {
+            return;
+        }
+
+        String key = "words-bucket-cms:" + timeBucket;
+        if (!redisService.exists(key)) {
+            try {
+                redisService.createCms(key, CMS_WIDTH, CMS_DEPTH);
+            } catch (JedisDataException e) {
+                logger.debug("Count-min sketch {} was created by another instance", key);
+            }
+        }
+        keyRegistry.register("words-bucket-cms:", timeBucket);
+        lastCmsBucket = timeBucket;
+    }
+
+    private void ensureSlotCms(String slotKey) {
+        if (slotKey.equals(lastSlotKey)) {
+            return;
+        }
+
+        if (!redisService.exists(slotKey)) {
+            redisService.createCms(slotKey, CMS_WIDTH, CMS_DEPTH, slidingWindow.slotTtlSeconds());
+        }
+        keyRegistry.register(SlidingWindow.SLOT_CMS_PREFIX,
+                slotKey.substring(SlidingWindow.SLOT_CMS_PREFIX.length()), slidingWindow.slotTtlSeconds());
+        lastSlotKey = slotKey;
+    }
+
+    private record PostMetrics(long eventMillis, String timeBucket, String slotKey, TermCounts termCounts) {
+    }
+}
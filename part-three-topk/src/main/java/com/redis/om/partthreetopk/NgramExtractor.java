@@ -0,0 +1,179 @@
+package com.redis.om.partthreetopk;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Extracts the n-grams of a post, up to {@code ingest.ngrams.max-n} words (1 to 3), counted by word ID in a
+ * {@link TermCounts}. Every n-gram is emitted exactly once, by its last word. Stopwords are dropped before n-grams
+ * are formed; a mention ({@code app.bsky.richtext.facet#mention}) ends the run of words, so no n-gram spans it,
+ * and is optionally counted as a term of its own. In hashtag-only mode only hashtags are counted, and any other
+ * word ends the run.
+ */
+@Component
+public class NgramExtractor {
+
+    // Marks the end of a run of consecutive words in the word ID buffer
+    private static final int BREAK = -2;
+    private static final ThreadLocal<Tokenizer> tokenizers = ThreadLocal.withInitial(Tokenizer::new);
+    private static final ThreadLocal<WordIds> wordIds = ThreadLocal.withInitial(WordIds::new);
+
+    private final StopwordFilter stopwordFilter;
+    private final int maxN;
+    private final boolean hashtagsOnly;
+    private final boolean countMentions;
+    private final DistributionSummary tokensPerPost;
+
+    public NgramExtractor(StopwordFilter stopwordFilter,
+                          @Value("${ingest.ngrams.max-n:2}") int maxN,
+                          @Value("${ingest.ngrams.hashtags-only:false}") boolean hashtagsOnly,
+                          @Value("${ingest.ngrams.count-mentions:false}") boolean countMentions,
+                          MeterRegistry meterRegistry) {
+        if (maxN < 1 || maxN > 3) {
+            throw new IllegalArgumentException("ingest.ngrams.max-n must be between 1 and 3, got " + maxN);
+        }
+        this.stopwordFilter = stopwordFilter;
+        this.maxN = maxN;
+        this.hashtagsOnly = hashtagsOnly;
+        this.countMentions = countMentions;
+        this.tokensPerPost = meterRegistry.summary("ingest.tokens.per.post");
+    }
+
+    /**
+     * Returns the n-gram counts of a post, or null if {@code dictionary} is full.
+     */
+    public TermCounts extract(String text, List<JetstreamEventDecoder.Mention> mentions, TermDictionary dictionary) {
+        WordIds words = wordIds.get();
+        words.clear();
+
+        if (mentions.isEmpty()) {
+            tokenize(text, dictionary, words);
+        } else {
+            int[] ranges = mentionRanges(text, mentions);
+            int from = 0;
+            for (int i = 0; i < ranges.length && ranges[i] >= 0; i += 2) {
+                tokenize(CharBuffer.wrap(text, from, ranges[i]), dictionary, words);
+                words.add(BREAK);
+                if (countMentions) {
+                    words.add(dictionary.intern(text.substring(ranges[i], ranges[i + 1]).toLowerCase(Locale.ROOT)));
+                    words.add(BREAK);
+                }
+                from = ranges[i + 1];
+            }
+            tokenize(CharBuffer.wrap(text, from, text.length()), dictionary, words);
+        }
+
+        if (words.full) {
+            return null;
+        }
+        tokensPerPost.record(words.count);
+        return countNgrams(words.ids, words.size, new TermCounts(dictionary, words.count * maxN));
+    }
+
+    TermCounts countNgrams(int[] ids, int size, TermCounts termCounts) {
+        int run = 0;
+        for (int i = 0; i < size; i++) {
+            int id = ids[i];
+            if (id == BREAK) {
+                run = 0;
+                continue;
+            }
+            run++;
+
+            termCounts.add(TermCounts.unigram(id), 1);
+            if (maxN >= 2 && run >= 2) termCounts.add(TermCounts.bigram(ids[i - 1], id), 1);
+            if (maxN >= 3 && run >= 3) termCounts.add(TermCounts.trigram(ids[i - 2], ids[i - 1], id), 1);
+        }
+        return termCounts;
+    }
+
+    private void tokenize(CharSequence text, TermDictionary dictionary, WordIds words) {
+        tokenizers.get().tokenize(text, token -> {
+            if (stopwordFilter.contains(token)) {
+                return;
+            }
+            if (hashtagsOnly && (token.length() < 2 || token.charAt(0) != '#')) {
+                words.add(BREAK);
+                return;
+            }
+            words.add(dictionary.intern(token));
+        });
+    }
+
+    /**
+     * Converts the UTF-8 byte ranges of the mentions into char ranges of {@code text}: start and end pairs in text
+     * order, followed by -1 where overlapping or empty mentions were skipped.
+     */
+    private static int[] mentionRanges(String text, List<JetstreamEventDecoder.Mention> mentions) {
+        List<JetstreamEventDecoder.Mention> sorted = mentions.size() == 1 ? mentions
+                : mentions.stream().sorted(Comparator.comparingInt(JetstreamEventDecoder.Mention::byteStart)).toList();
+        int[] ranges = new int[sorted.size() * 2];
+        Arrays.fill(ranges, -1);
+
+        int length = text.length();
+        int index = 0;
+        int byteIndex = 0;
+        int count = 0;
+        for (JetstreamEventDecoder.Mention mention : sorted) {
+            if (mention.byteStart() < byteIndex) {
+                continue;
+            }
+            while (index < length && byteIndex < mention.byteStart()) {
+                int codePoint = text.codePointAt(index);
+                byteIndex += utf8Length(codePoint);
+                index += Character.charCount(codePoint);
+            }
+            int start = index;
+            while (index < length && byteIndex < mention.byteEnd()) {
+                int codePoint = text.codePointAt(index);
+                byteIndex += utf8Length(codePoint);
+                index += Character.charCount(codePoint);
+            }
+            if (index > start) {
+                ranges[count++] = start;
+                ranges[count++] = index;
+            }
+        }
+        return ranges;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) return 1;
+        if (codePoint < 0x800) return 2;
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+
+    // Word IDs of the post being processed, with BREAK between runs, reused by every post of a thread
+    private static class WordIds {
+        int[] ids = new int[64];
+        int size;
+        int count;
+        boolean full;
+
+        void clear() {
+            size = 0;
+            count = 0;
+            full = false;
+        }
+
+        void add(int id) {
+            if (id == -1) {
+                full = true;
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            if (id != BREAK) count++;
+        }
+    }
+}
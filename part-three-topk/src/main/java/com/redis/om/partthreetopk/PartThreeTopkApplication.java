@@ -17,7 +17,7 @@ public class PartThreeTopkApplication {
     public CommandLineRunner run(
             JetstreamClient client) {
         return args -> {
-            client.start("wss://jetstream2.us-east.bsky.network/subscribe?wantedCollections=app.bsky.feed.post"); // this is the firehose, replace with Jetstream URL if needed
+            client.start(); // the firehose by default, set jetstream.url or jetstream.source=replay to read elsewhere
         };
     }
 }
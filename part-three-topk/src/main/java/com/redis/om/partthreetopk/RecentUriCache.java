@@ -0,0 +1,89 @@
+package com.redis.om.partthreetopk;
+
+import java.util.Arrays;
+
+/**
+ * Bounded, time-windowed set of recently seen URIs, stored as 64-bit hashes in two open-addressed generations.
+ * New hashes go into the current generation; when it is full or older than the window it becomes the previous
+ * one and the old previous generation is dropped. Lookups check both, so a URI is remembered for at least one window.
+ */
+class RecentUriCache {
+
+    private final int capacity;
+    private final long windowNanos;
+    private final int mask;
+
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+    private long generationStart;
+
+    RecentUriCache(int capacity, long windowSeconds) {
+        this.capacity = capacity;
+        this.windowNanos = windowSeconds * 1_000_000_000L;
+        // Keep each generation at most half full
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 1) * 4 - 1);
+        this.mask = tableSize - 1;
+        this.current = new long[tableSize];
+        this.previous = new long[tableSize];
+        this.generationStart = System.nanoTime();
+    }
+
+    /**
+     * Returns {@code true} if the URI was remembered within the window. Does not remember it.
+     */
+    synchronized boolean contains(CharSequence uri) {
+        long hash = hash(uri);
+        return contains(previous, hash) || contains(current, hash);
+    }
+
+    /**
+     * Remembers the URI, if it is not already known.
+     */
+    synchronized void add(CharSequence uri) {
+        long hash = hash(uri);
+        if (contains(previous, hash) || contains(current, hash)) {
+            return;
+        }
+
+        if (currentSize >= capacity || System.nanoTime() - generationStart > windowNanos) {
+            rotate();
+        }
+        insert(current, hash);
+        currentSize++;
+    }
+
+    private static long hash(CharSequence uri) {
+        long hash = Hashing.hash64(uri);
+        return hash == 0 ? 1 : hash; // 0 marks an empty slot
+    }
+
+    private void rotate() {
+        long[] dropped = previous;
+        previous = current;
+        Arrays.fill(dropped, 0L);
+        current = dropped;
+        currentSize = 0;
+        generationStart = System.nanoTime();
+    }
+
+    private boolean contains(long[] table, long hash) {
+        int slot = (int) hash & mask;
+        long entry;
+        while ((entry = table[slot]) != 0) {
+            if (entry == hash) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    private void insert(long[] table, long hash) {
+        int slot = (int) hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = hash;
+    }
+}
@@ -4,30 +4,130 @@ import com.redis.om.spring.ops.RedisModulesOperations;
 import com.redis.om.spring.ops.pds.BloomOperations;
 import com.redis.om.spring.ops.pds.CountMinSketchOperations;
 import com.redis.om.spring.ops.pds.TopKOperations;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import redis.clients.jedis.AbstractTransaction;
 import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.args.ExpiryOption;
 import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.params.SetParams;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Service
 public class RedisService {
+    // Adds items that none of the older Bloom filters has seen to the current one, atomically.
+    // KEYS: current filter, set of new items, counter of new items, older filters to check first
+    // ARGV: expiry in seconds for the first three keys, then the items
+    private static final String BLOOM_ADD_NEW_SCRIPT = """
+            local result = {}
+            local fresh = {}
+            for i = 2, #ARGV do
+                local item = ARGV[i]
+                local seen = false
+                for k = 4, #KEYS do
+                    if redis.call('BF.EXISTS', KEYS[k], item) == 1 then
+                        seen = true
+                        break
+                    end
+                end
+                result[i - 1] = 0
+                if not seen and redis.call('BF.ADD', KEYS[1], item) == 1 then
+                    result[i - 1] = 1
+                    fresh[#fresh + 1] = item
+                end
+            end
+            if #fresh > 0 then
+                redis.call('SADD', KEYS[2], unpack(fresh))
+                redis.call('INCRBY', KEYS[3], #fresh)
+                for k = 1, 3 do
+                    redis.call('EXPIRE', KEYS[k], ARGV[1])
+                end
+            end
+            return result
+            """;
+
     private final JedisPooled jedisPooled;
     private final CountMinSketchOperations<String> countMinSketchOperations;
     private final BloomOperations<String> bloomOperations;
     private final TopKOperations<String> topKOperations;
+    // SHA1 of every script loaded so far, by script
+    private final Map<String, String> scriptShas = new ConcurrentHashMap<>();
 
+    @Autowired
     public RedisService(RedisModulesOperations<String> redisModulesOperations) {
-        this.jedisPooled = new JedisPooled("localhost", 6379);
-        this.countMinSketchOperations = redisModulesOperations.opsForCountMinSketch();
-        this.bloomOperations = redisModulesOperations.opsForBloom();
-        this.topKOperations = redisModulesOperations.opsForTopK();
+        this(new JedisPooled("localhost", 6379),
+                redisModulesOperations.opsForCountMinSketch(),
+                redisModulesOperations.opsForBloom(),
+                redisModulesOperations.opsForTopK());
+    }
+
+    // For in-memory stand-ins (benchmarks) that override the methods they need
+    RedisService(JedisPooled jedisPooled,
+                 CountMinSketchOperations<String> countMinSketchOperations,
+                 BloomOperations<String> bloomOperations,
+                 TopKOperations<String> topKOperations) {
+        this.jedisPooled = jedisPooled;
+        this.countMinSketchOperations = countMinSketchOperations;
+        this.bloomOperations = bloomOperations;
+        this.topKOperations = topKOperations;
     }
 
     public boolean exists(String key) {
         return jedisPooled.exists(key);
     }
 
+    public void expire(String key, long ttlSeconds) {
+        jedisPooled.expire(key, ttlSeconds);
+    }
+
+    // String methods
+    public String get(String key) {
+        return jedisPooled.get(key);
+    }
+
+    public void set(String key, String value) {
+        jedisPooled.set(key, value);
+    }
+
+    public boolean setIfAbsent(String key, String value, long ttlSeconds) {
+        return "OK".equals(jedisPooled.set(key, value, SetParams.setParams().nx().ex(ttlSeconds)));
+    }
+
+    public void delete(String key) {
+        jedisPooled.del(key);
+    }
+
+    // Runs a Lua script; Redis executes it atomically. The script is loaded once and then called by its SHA1, so its
+    // body is not sent with every call; if the server has lost it (restart, SCRIPT FLUSH) EVAL sends and caches it again
+    public Object eval(String script, List<String> keys, List<String> args) {
+        String sha = scriptShas.get(script);
+        if (sha == null) {
+            sha = jedisPooled.scriptLoad(script);
+            scriptShas.put(script, sha);
+        }
+        try {
+            return jedisPooled.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            return jedisPooled.eval(script, keys, args);
+        }
+    }
+
+    // Pipelining: queue several commands and send them in one round trip
+    public void pipelined(Consumer<Pipeline> commands) {
+        try (Pipeline pipeline = jedisPooled.pipelined()) {
+            commands.accept(pipeline);
+            pipeline.sync();
+        }
+    }
+
     // Set methods
     public void sAdd(String key, String... value) {
         jedisPooled.sadd(key, value);
@@ -37,6 +137,10 @@ public class RedisService {
         return jedisPooled.smembers(key);
     }
 
+    public Set<String> sUnion(String... keys) {
+        return jedisPooled.sunion(keys);
+    }
+
     // Sorted set methods
     public void zIncrBy(String key, String member, double score) {
         jedisPooled.zincrby(key, score, member);
@@ -47,6 +151,16 @@ public class RedisService {
         countMinSketchOperations.cmsInitByDim(key, width, depth);
     }
 
+    // Creates the CMS and its expiry in one MULTI/EXEC, so it never exists without a TTL.
+    // If another instance created it first, CMS.INITBYDIM fails inside the transaction and its TTL is kept
+    public void createCms(String key, int width, int depth, long ttlSeconds) {
+        try (AbstractTransaction transaction = jedisPooled.multi()) {
+            transaction.cmsInitByDim(key, width, depth);
+            transaction.expire(key, ttlSeconds, ExpiryOption.NX);
+            transaction.exec();
+        }
+    }
+
     public void cmsIncrBy(String key, String item, int count) {
         countMinSketchOperations.cmsIncrBy(key, item, count);
     }
@@ -72,6 +186,28 @@ public class RedisService {
         return bloomOperations.exists(key, item);
     }
 
+    /**
+     * Adds the items to the current Bloom filter in one atomic call and returns, per item, whether it was new.
+     * Items found in any of {@code olderBloomKeys} count as seen and are not added. New items are also added to
+     * {@code setKey} and counted in {@code counterKey}, and the current filter, set and counter expire after
+     * {@code ttlSeconds}. Since the script checks and adds in one step, two concurrent callers can never both
+     * see the same item as new.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Boolean> addNewToBloomFilter(String bloomKey, String setKey, String counterKey,
+                                             List<String> olderBloomKeys, long ttlSeconds, List<String> items) {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>(List.of(bloomKey, setKey, counterKey));
+        keys.addAll(olderBloomKeys);
+        List<String> args = new ArrayList<>(items.size() + 1);
+        args.add(Long.toString(ttlSeconds));
+        args.addAll(items);
+        List<Long> added = (List<Long>) eval(BLOOM_ADD_NEW_SCRIPT, keys, args);
+        return added.stream().map(wasAdded -> wasAdded == 1L).toList();
+    }
+
     // TopK methods
     public void initTopK(String key, int topK, int width, int depth, double decay) {
         topKOperations.createFilter(key, topK, width, depth, decay);
@@ -0,0 +1,162 @@
+package com.redis.om.partthreetopk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the number of bucket keys bounded. Once a minute is closed its CMS is merged into the hourly and daily
+ * sketches, its ZSET is folded into trimmed hourly/daily ZSETs, and all of its per-minute keys get an expiry.
+ * Minutes close in event time, as the {@link EventClock} watermark passes them.
+ * <p>
+ * A minute is rolled up by one script that also moves {@code retention:last-rollup} to it, and does nothing if that
+ * marker is already there: several ingest instances never roll up the same minute twice, and a rollup that fails
+ * is simply retried. The sketches are merged into temporary keys that are only renamed over the rollups once every
+ * merge succeeded, so a failed merge leaves the rollups untouched.
+ */
+@Component
+public class RetentionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionManager.class);
+    private static final String LAST_ROLLUP_KEY = "retention:last-rollup";
+    private static final String MERGING_SUFFIX = ":merging";
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // KEYS: last rollup marker, minute CMS, hourly and daily CMS, their temporary merges, minute ZSET,
+    //       hourly and daily ZSET, then the minute's keys to expire
+    // ARGV: minute bucket, CMS width, CMS depth, hourly TTL, daily TTL, minute TTL, rollup top K
+    private static final String ROLLUP_SCRIPT = """
+            local last = tonumber(redis.call('GET', KEYS[1]) or '')
+            if last and last >= tonumber(ARGV[1]) then
+                return 0
+            end
+            if redis.call('EXISTS', KEYS[2]) == 1 then
+                for i = 3, 4 do
+                    redis.call('DEL', KEYS[i + 2])
+                    redis.call('CMS.INITBYDIM', KEYS[i + 2], ARGV[2], ARGV[3])
+                    if redis.call('EXISTS', KEYS[i]) == 1 then
+                        redis.call('CMS.MERGE', KEYS[i + 2], 2, KEYS[i], KEYS[2])
+                    else
+                        redis.call('CMS.MERGE', KEYS[i + 2], 1, KEYS[2])
+                    end
+                end
+                for i = 3, 4 do
+                    redis.call('RENAME', KEYS[i + 2], KEYS[i])
+                    redis.call('EXPIRE', KEYS[i], ARGV[i + 1])
+                end
+            end
+            for i = 8, 9 do
+                redis.call('ZUNIONSTORE', KEYS[i], 2, KEYS[i], KEYS[7])
+                redis.call('ZREMRANGEBYRANK', KEYS[i], 0, -(tonumber(ARGV[7]) + 1))
+                redis.call('EXPIRE', KEYS[i], ARGV[i - 4])
+            end
+            for i = 10, #KEYS do
+                redis.call('EXPIRE', KEYS[i], ARGV[6])
+            end
+            redis.call('SET', KEYS[1], ARGV[1])
+            return 1
+            """;
+    private static final String[] MINUTE_KEY_PREFIXES = {
+            "words-bucket-cms:", "words-bucket-zset:", HeavyHitterTracker.ERROR_PREFIX, "words-set:", "spiking-topk:",
+            "spiking-zset:"
+    };
+
+    private final RedisService redisService;
+    private final KeyRegistry keyRegistry;
+    private final EventClock eventClock;
+    private final long minuteTtlSeconds;
+    private final long hourlyTtlSeconds;
+    private final long dailyTtlSeconds;
+    private final int rollupTopK;
+    private final int maxCatchUpMinutes;
+
+    public RetentionManager(RedisService redisService,
+                            KeyRegistry keyRegistry,
+                            EventClock eventClock,
+                            @Value("${retention.minute-ttl-seconds:7200}") long minuteTtlSeconds,
+                            @Value("${retention.hourly-ttl-seconds:604800}") long hourlyTtlSeconds,
+                            @Value("${retention.daily-ttl-seconds:7776000}") long dailyTtlSeconds,
+                            @Value("${retention.rollup-top-k:1000}") int rollupTopK,
+                            @Value("${retention.max-catch-up-minutes:120}") int maxCatchUpMinutes) {
+        this.redisService = redisService;
+        this.keyRegistry = keyRegistry;
+        this.eventClock = eventClock;
+        this.minuteTtlSeconds = minuteTtlSeconds;
+        this.hourlyTtlSeconds = hourlyTtlSeconds;
+        this.dailyTtlSeconds = dailyTtlSeconds;
+        this.rollupTopK = rollupTopK;
+        this.maxCatchUpMinutes = maxCatchUpMinutes;
+    }
+
+    // Checked more often than once a minute so replays faster than real time are rolled up as they go
+    @Scheduled(fixedDelayString = "${retention.interval-ms:10000}", initialDelay = 30_000)
+    public void rollUpClosedMinutes() {
+        long watermark = eventClock.watermarkMillis();
+        if (watermark == 0) {
+            return;
+        }
+
+        // Give ingestion and spike detection a full minute to finish with a bucket
+        long lastClosed = EventClock.minuteStart(watermark) - 2 * MINUTE_MILLIS;
+        long earliest = lastClosed - (maxCatchUpMinutes - 1) * MINUTE_MILLIS;
+
+        Long lastRollup = lastRollup();
+        long minute = lastRollup == null ? lastClosed : lastRollup + MINUTE_MILLIS;
+        if (minute < earliest) {
+            minute = earliest;
+        }
+
+        try {
+            for (; minute <= lastClosed; minute += MINUTE_MILLIS) {
+                rollUp(minute);
+            }
+        } catch (RuntimeException e) {
+            // The marker was not moved, the minute is retried on the next run
+            logger.error("Failed to roll up minute buckets: {}", e.getMessage());
+        }
+    }
+
+    // Start of the last rolled up minute, null if there is none or it was written with the former ISO keys
+    private Long lastRollup() {
+        String lastRollup = redisService.get(LAST_ROLLUP_KEY);
+        try {
+            return lastRollup == null ? null : TimeUnit.SECONDS.toMillis(Long.parseLong(lastRollup));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void rollUp(long minute) {
+        String bucket = EventClock.bucket(minute);
+        String hourBucket = "hour:" + EventClock.hourBucket(minute);
+        String dayBucket = "day:" + EventClock.dayBucket(minute);
+
+        String hourCms = "words-bucket-cms:" + hourBucket;
+        String dayCms = "words-bucket-cms:" + dayBucket;
+        List<String> keys = new ArrayList<>(List.of(LAST_ROLLUP_KEY, "words-bucket-cms:" + bucket,
+                hourCms, dayCms, hourCms + MERGING_SUFFIX, dayCms + MERGING_SUFFIX,
+                "words-bucket-zset:" + bucket, "words-bucket-zset:" + hourBucket, "words-bucket-zset:" + dayBucket));
+        for (String prefix : MINUTE_KEY_PREFIXES) {
+            keys.add(prefix + bucket);
+        }
+        List<String> args = List.of(bucket, Integer.toString(MetricsBatcher.CMS_WIDTH),
+                Integer.toString(MetricsBatcher.CMS_DEPTH), Long.toString(hourlyTtlSeconds),
+                Long.toString(dailyTtlSeconds), Long.toString(minuteTtlSeconds), Integer.toString(rollupTopK));
+
+        if (Long.valueOf(1).equals(redisService.eval(ROLLUP_SCRIPT, keys, args))) {
+            registerRollups("words-bucket-cms:", minute);
+            registerRollups("words-bucket-zset:", minute);
+            logger.debug("Rolled up minute bucket {}", bucket);
+        }
+    }
+
+    private void registerRollups(String prefix, long minute) {
+        keyRegistry.register(prefix + "hour:", EventClock.hourBucket(minute), hourlyTtlSeconds);
+        keyRegistry.register(prefix + "day:", EventClock.dayBucket(minute), dailyTtlSeconds);
+    }
+}
@@ -0,0 +1,125 @@
+package com.redis.om.partthreetopk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ring of short event-time slots (10s by default) used to score trends over sliding windows. Every slot has its
+ * own Count-Min Sketch ({@code words-slot-cms:<slot start epoch second>}) that expires once it has left the ring.
+ * <p>
+ * A term's rate over a window is its exponentially decayed count divided by the equally decayed time the window
+ * covers. Windows end on slot boundaries and only hold complete slots, so a window that has just crossed a minute
+ * boundary reads about the same as the one before, instead of starting again from an empty bucket. The recent
+ * window holds the newest slots, the baseline the slots right before it. Times are epoch milliseconds.
+ */
+@Component
+public class SlidingWindow {
+
+    static final String SLOT_CMS_PREFIX = "words-slot-cms:";
+
+    private final int slotSeconds;
+    private final long slotMillis;
+    private final double[] recentWeights;
+    private final double[] baselineWeights;
+    private final double recentSeconds;
+    private final double baselineSeconds;
+
+    public SlidingWindow(@Value("${trends.slot-seconds:10}") int slotSeconds,
+                         @Value("${trends.recent.window-seconds:60}") int recentWindowSeconds,
+                         @Value("${trends.recent.half-life-seconds:30}") double recentHalfLifeSeconds,
+                         @Value("${trends.baseline.window-seconds:180}") int baselineWindowSeconds,
+                         @Value("${trends.baseline.half-life-seconds:120}") double baselineHalfLifeSeconds) {
+        if (slotSeconds <= 0 || 60 % slotSeconds != 0) {
+            throw new IllegalArgumentException("trends.slot-seconds must divide a minute, got " + slotSeconds);
+        }
+        this.slotSeconds = slotSeconds;
+        this.slotMillis = TimeUnit.SECONDS.toMillis(slotSeconds);
+        this.recentWeights = weights(Math.max(1, recentWindowSeconds / slotSeconds), recentHalfLifeSeconds);
+        this.baselineWeights = weights(Math.max(1, baselineWindowSeconds / slotSeconds), baselineHalfLifeSeconds);
+
+        double recent = 0;
+        for (double weight : recentWeights) {
+            recent += weight * slotSeconds;
+        }
+        double baseline = 0;
+        for (double weight : baselineWeights) {
+            baseline += weight * slotSeconds;
+        }
+        this.recentSeconds = recent;
+        this.baselineSeconds = baseline;
+    }
+
+    // Weight of the slot `age` slots away from the newest slot of the window
+    private double[] weights(int slots, double halfLifeSeconds) {
+        double[] weights = new double[slots];
+        for (int age = 0; age < slots; age++) {
+            weights[age] = Math.pow(0.5, age * slotSeconds / halfLifeSeconds);
+        }
+        return weights;
+    }
+
+    public long slotStart(long millis) {
+        return Math.floorDiv(millis, slotMillis) * slotMillis;
+    }
+
+    public long slotMillis() {
+        return slotMillis;
+    }
+
+    public String slotKey(long slotStart) {
+        return SLOT_CMS_PREFIX + EventClock.bucket(slotStart);
+    }
+
+    /**
+     * Starts of the slots read by a score of the window ending at the slot boundary {@code end}: the newest slot
+     * first, then older ones, the recent window followed by the baseline.
+     */
+    public List<Long> slots(long end) {
+        long newest = end - slotMillis;
+        List<Long> slots = new ArrayList<>(slotCount());
+        for (int age = 0; age < slotCount(); age++) {
+            slots.add(newest - age * slotMillis);
+        }
+        return slots;
+    }
+
+    public int slotCount() {
+        return recentWeights.length + baselineWeights.length;
+    }
+
+    public int recentSlotCount() {
+        return recentWeights.length;
+    }
+
+    // Slot sketches are written during their slot and read while they are within the ring
+    public long slotTtlSeconds() {
+        return 2L * (slotCount() + 1) * slotSeconds;
+    }
+
+    /**
+     * Decayed per-second rate of item {@code i} over the recent window.
+     * {@code countsBySlot} is ordered like {@link #slots(long)}.
+     */
+    public double recentRate(List<List<Long>> countsBySlot, int i) {
+        double weighted = 0;
+        for (int age = 0; age < recentWeights.length; age++) {
+            weighted += recentWeights[age] * countsBySlot.get(age).get(i);
+        }
+        return weighted / recentSeconds;
+    }
+
+    /**
+     * Decayed per-second rate of item {@code i} over the baseline window.
+     */
+    public double baselineRate(List<List<Long>> countsBySlot, int i) {
+        double weighted = 0;
+        for (int age = 0; age < baselineWeights.length; age++) {
+            weighted += baselineWeights[age] * countsBySlot.get(recentWeights.length + age).get(i);
+        }
+        return weighted / baselineSeconds;
+    }
+}
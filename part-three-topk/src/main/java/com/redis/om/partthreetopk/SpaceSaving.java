@@ -0,0 +1,70 @@
+package com.redis.om.partthreetopk;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving summary of the heaviest terms of a stream in a fixed number of counters. When all counters are
+ * taken, a new term replaces the smallest one and inherits its count as error. A term's count overestimates its
+ * true count by at most its error, and every term seen more than {@code total / capacity} times is kept.
+ * Instances are not thread-safe.
+ */
+public class SpaceSaving {
+
+    private static final Comparator<Counter> BY_COUNT =
+            Comparator.comparingLong(Counter::count).thenComparing(Counter::term);
+
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void add(String term, long count) {
+        total += count;
+        Counter counter = counters.get(term);
+        if (counter != null) {
+            byCount.remove(counter);
+            put(new Counter(term, counter.count() + count, counter.error()));
+        } else if (counters.size() < capacity) {
+            put(new Counter(term, count, 0));
+        } else {
+            Counter smallest = byCount.pollFirst();
+            counters.remove(smallest.term());
+            put(new Counter(term, smallest.count() + count, smallest.count()));
+        }
+    }
+
+    private void put(Counter counter) {
+        counters.put(counter.term(), counter);
+        byCount.add(counter);
+    }
+
+    /**
+     * The {@code k} largest counters, largest first.
+     */
+    public List<Counter> top(int k) {
+        List<Counter> top = new ArrayList<>(Math.min(k, counters.size()));
+        Iterator<Counter> descending = byCount.descendingIterator();
+        while (descending.hasNext() && top.size() < k) {
+            top.add(descending.next());
+        }
+        return top;
+    }
+
+    // Sum of all counts added, the stream length N of the error bound N / capacity
+    public long total() {
+        return total;
+    }
+
+    public record Counter(String term, long count, long error) {
+    }
+}
@@ -1,67 +1,191 @@
 package com.redis.om.partthreetopk;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
 
-import java.time.LocalDateTime;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Scores the terms of the recent window against their baseline, from the slot sketches of the
+ * {@link SlidingWindow}. Windows are scored in event time, once for every slot the {@link EventClock} watermark
+ * completes (every 10s by default), so a replay or a catch-up after a stall produces the same scores as live
+ * processing. A window reads every slot of the ring: one multi-item CMS.QUERY per slot and batch of terms, in a
+ * single pipeline. Scores go to the spiking ZSET and TopK of the minute the window ends in. Every window is
+ * claimed with SET NX, so several ingest instances never score the same window twice; a window whose scoring fails
+ * is released and retried. Slot sketches are left to expire: a retried window or another instance catching up may
+ * still need the oldest one.
+ */
 @Component
 public class SpikeDetector {
 
     private static final Logger logger = LoggerFactory.getLogger(SpikeDetector.class);
     private final RedisService redisService;
+    private final KeyRegistry keyRegistry;
+    private final SlidingWindow slidingWindow;
+    private final EventClock eventClock;
+    private final int batchSize;
+    private final int maxCatchUpSlots;
+    private final Timer computeTimer;
+    private final Timer queryTimer;
+    private final Timer writeTimer;
+    private final Counter termsScored;
 
-    public SpikeDetector(RedisService redisService) {
+    private long lastScoredEnd;
+
+    public SpikeDetector(RedisService redisService,
+                         KeyRegistry keyRegistry,
+                         SlidingWindow slidingWindow,
+                         EventClock eventClock,
+                         @Value("${spikes.batch-size:10000}") int batchSize,
+                         @Value("${spikes.max-catch-up-slots:360}") int maxCatchUpSlots,
+                         MeterRegistry meterRegistry) {
         this.redisService = redisService;
+        this.keyRegistry = keyRegistry;
+        this.slidingWindow = slidingWindow;
+        this.eventClock = eventClock;
+        this.batchSize = batchSize;
+        this.maxCatchUpSlots = maxCatchUpSlots;
+        this.computeTimer = meterRegistry.timer("spikes.compute");
+        this.queryTimer = meterRegistry.timer("redis.latency", "op", "cms_query");
+        this.writeTimer = meterRegistry.timer("redis.latency", "op", "spikes_write");
+        this.termsScored = meterRegistry.counter("spikes.terms.scored");
+    }
+
+    @Scheduled(fixedDelayString = "${spikes.interval-ms:2000}")
+    public synchronized void computeSpikes() {
+        long watermark = eventClock.watermarkMillis();
+        if (watermark == 0) {
+            return;
+        }
+
+        long slotMillis = slidingWindow.slotMillis();
+        long lastCompleted = slidingWindow.slotStart(watermark);
+        if (lastScoredEnd == 0) {
+            lastScoredEnd = lastCompleted - slotMillis;
+        } else if (lastCompleted - lastScoredEnd > maxCatchUpSlots * slotMillis) {
+            logger.warn("Spike scoring is more than {} slots behind, skipping the windows before", maxCatchUpSlots);
+            lastScoredEnd = lastCompleted - maxCatchUpSlots * slotMillis;
+        }
+
+        try {
+            for (long end = lastScoredEnd + slotMillis; end <= lastCompleted; end += slotMillis) {
+                String claimKey = "spikes:scored:" + EventClock.bucket(end);
+                if (redisService.setIfAbsent(claimKey, "1", slidingWindow.slotTtlSeconds())) {
+                    scoreClaimedWindow(claimKey, end);
+                }
+                lastScoredEnd = end;
+            }
+        } catch (RuntimeException e) {
+            // The window is retried on the next run, by this instance or another one
+            logger.error("Failed to compute spikes: {}", e.getMessage());
+        }
     }
 
-    @Scheduled(fixedRate = 60_000)
-    public void computeSpikes() {
-        logger.info("Calculating spikes...");
-        String now = bucketKey(0);
-        String prev1 = bucketKey(-1);
-        String prev2 = bucketKey(-2);
-        String prev3 = bucketKey(-3);
+    private void scoreClaimedWindow(String claimKey, long end) {
+        try {
+            computeTimer.record(() -> scoreWindow(end));
+        } catch (RuntimeException e) {
+            try {
+                redisService.delete(claimKey);
+            } catch (RuntimeException releaseFailure) {
+                logger.warn("Failed to release spike claim {}, it expires on its own", claimKey);
+            }
+            throw e;
+        }
+    }
 
-        Set<String> terms = redisService.sMembers("words-set");
+    private void scoreWindow(long end) {
+        logger.debug("Calculating spikes for the window ending at {}", end);
+        List<Long> slots = slidingWindow.slots(end);
+        String[] slotKeys = slots.stream().map(slidingWindow::slotKey).toArray(String[]::new);
+
+        // Only the terms seen during the recent window can spike
+        String currentBucket = EventClock.minuteBucket(end - 1);
+        String[] vocabularyKeys = slots.subList(0, slidingWindow.recentSlotCount()).stream()
+                .map(slot -> "words-set:" + EventClock.minuteBucket(slot))
+                .distinct()
+                .toArray(String[]::new);
+        List<String> terms = List.copyOf(redisService.sUnion(vocabularyKeys));
 
         // Ensure TopK exists
-        String currentBucket = getCurrentTimeBucket();
         String topKKey = "spiking-topk:" + currentBucket;
         if (!redisService.exists(topKKey)) {
             redisService.initTopK(topKKey, 10, 3000, 12, 0.9);
         }
+        keyRegistry.register("spiking-topk:", currentBucket);
+        keyRegistry.register("spiking-zset:", currentBucket);
 
-        for (String term : terms) {
-            long current = redisService.cmsQuery(now, term);
-            long pastAvg = (redisService.cmsQuery(prev1, term)
-                    + redisService.cmsQuery(prev2, term)
-                    + redisService.cmsQuery(prev3, term)) / 3;
+        for (int i = 0; i < terms.size(); i += batchSize) {
+            List<String> batch = terms.subList(i, Math.min(i + batchSize, terms.size()));
+            scoreBatch(batch, slotKeys, "spiking-zset:" + currentBucket, topKKey);
+            termsScored.increment(batch.size());
+        }
 
-            if (pastAvg > 0) {
-                double spikeScore = (current - pastAvg) / (double) pastAvg;
+        logger.debug("Spikes calculated and stored for {} terms.", terms.size());
+    }
 
-                // Push into ZSET for full scoring
-                redisService.zIncrBy("spiking-zset:" + currentBucket, term, spikeScore);
+    private void scoreBatch(List<String> terms, String[] slotKeys, String zsetKey, String topKKey) {
+        String[] items = terms.toArray(new String[0]);
 
-                // Push into TopK (rank only, no score)
-                redisService.topkIncrBy(topKKey, term, (int) spikeScore);
+        // One multi-item CMS.QUERY per slot, all in a single round trip
+        List<Response<List<Long>>> responses = new ArrayList<>(slotKeys.length);
+        queryTimer.record(() -> redisService.pipelined(pipeline -> {
+            for (String slotKey : slotKeys) {
+                responses.add(pipeline.cmsQuery(slotKey, items));
             }
-        }
+        }));
+        List<List<Long>> counts = responses.stream().map(response -> countsOf(response, items.length)).toList();
+
+        Map<String, Double> spikeScores = new HashMap<>();
+        Map<String, Long> topKIncrements = new HashMap<>();
+        score(items, counts, slidingWindow, spikeScores, topKIncrements);
 
-        logger.info("Spikes calculated and stored.");
+        writeTimer.record(() -> redisService.pipelined(pipeline -> {
+            // The ZSET holds the latest score of each term, so it can be read at any moment
+            if (!spikeScores.isEmpty()) {
+                pipeline.zadd(zsetKey, spikeScores);
+            }
+
+            // Push into TopK (rank only, no score); terms that keep spiking through the minute rank higher
+            if (!topKIncrements.isEmpty()) {
+                pipeline.topkIncrBy(topKKey, topKIncrements);
+            }
+        }));
     }
 
-    private String bucketKey(int minutesAgo) {
-        return "words-bucket-cms:" + LocalDateTime.now()
-                .minusMinutes(minutesAgo)
-                .withSecond(0).withNano(0);
+    // counts holds the CMS counts of every slot of the window, newest first
+    static void score(String[] items, List<List<Long>> counts, SlidingWindow window,
+                      Map<String, Double> spikeScores, Map<String, Long> topKIncrements) {
+        for (int i = 0; i < items.length; i++) {
+            double baseline = window.baselineRate(counts, i);
+            if (baseline > 0) {
+                double spikeScore = (window.recentRate(counts, i) - baseline) / baseline;
+                spikeScores.put(items[i], spikeScore);
+                if ((long) spikeScore > 0) {
+                    topKIncrements.put(items[i], (long) spikeScore);
+                }
+            }
+        }
     }
 
-    private String getCurrentTimeBucket() {
-        return LocalDateTime.now().withSecond(0).withNano(0).toString();
+    // A slot that does not exist yet (e.g. right after startup) counts as zero for every term
+    private static List<Long> countsOf(Response<List<Long>> response, int size) {
+        try {
+            return response.get();
+        } catch (JedisDataException e) {
+            return Collections.nCopies(size, 0L);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package com.redis.om.partthreetopk;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.List;
+
+/**
+ * Immutable in-process stopword index loaded from {@code stopwords-en.json} at startup.
+ * Words are stored in an open-addressed table keyed on their chars, so a lookup hashes the
+ * token in place and never allocates. The Redis {@code stopwords-bf} is only kept as a mirror for the dashboard.
+ */
+@Component
+public class StopwordFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StopwordFilter.class);
+
+    private final char[][] table;
+    private final int mask;
+
+    public StopwordFilter(ResourceLoader resourceLoader,
+                          RedisService redisService,
+                          KeyRegistry keyRegistry,
+                          @Value("${stopwords.redis-mirror.enabled:true}") boolean redisMirror) {
+        List<String> words = loadStopwords(resourceLoader);
+
+        // Keep the load factor under 0.5 so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(words.size(), 1) * 4 - 1);
+        this.table = new char[capacity][];
+        this.mask = capacity - 1;
+        for (String word : words) {
+            add(word.toCharArray());
+        }
+        logger.info("Stopwords indexed: {}", words.size());
+
+        if (redisMirror) {
+            mirrorToRedis(redisService, words);
+            keyRegistry.register("stopwords-bf");
+            keyRegistry.register("stopwords-set");
+        }
+    }
+
+    public boolean contains(CharSequence word) {
+        int length = word.length();
+        int slot = hash(word, length) & mask;
+        char[] entry;
+        while ((entry = table[slot]) != null) {
+            if (matches(entry, word, length)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    private void add(char[] word) {
+        CharSequence view = CharBuffer.wrap(word);
+        int slot = hash(view, word.length) & mask;
+        while (table[slot] != null) {
+            if (matches(table[slot], view, word.length)) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = word;
+    }
+
+    private static int hash(CharSequence word, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + word.charAt(i);
+        }
+        // Spread the high bits down, the table is indexed with a power-of-two mask
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(char[] entry, CharSequence word, int length) {
+        if (entry.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (entry[i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> loadStopwords(ResourceLoader resourceLoader) {
+        try {
+            var resource = resourceLoader.getResource("classpath:stopwords-en.json");
+            return new ObjectMapper().readValue(resource.getInputStream(), new TypeReference<List<String>>() {});
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load stopwords", e);
+        }
+    }
+
+    private static void mirrorToRedis(RedisService redisService, List<String> words) {
+        if (!redisService.exists("stopwords-bf")) {
+            redisService.createBloomFilter("stopwords-bf", 1300, 0.01);
+            redisService.addMultiToBloomFilter("stopwords-bf", words.toArray(new String[0]));
+            redisService.sAdd("stopwords-set", words.toArray(new String[0]));
+            logger.info("Stopwords mirrored to Redis: {}", words.size());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.redis.om.partthreetopk;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Term counts keyed by the IDs of a {@link TermDictionary}: an n-gram of up to three words is keyed by its word IDs
+ * packed in one long, 21 bits each. Open addressing over primitive arrays, so counting boxes nothing; the term
+ * Strings are only built by {@link #toMap()}, when the counts are written to Redis. Instances are not thread-safe.
+ */
+public class TermCounts {
+
+    // Word IDs are stored plus one, so an unused position is 0 and n-grams of different lengths never collide
+    private static final int ID_BITS = 21;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    static final int MAX_TERMS = (int) ID_MASK;
+    private static final long EMPTY = -1;
+
+    private final TermDictionary dictionary;
+    private long[] keys;
+    private long[] counts;
+    private int size;
+
+    public TermCounts(TermDictionary dictionary) {
+        this(dictionary, 16);
+    }
+
+    public TermCounts(TermDictionary dictionary, int expectedSize) {
+        this.dictionary = dictionary;
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    static long unigram(int id) {
+        return id + 1L;
+    }
+
+    static long bigram(int first, int second) {
+        return (unigram(first) << ID_BITS) | unigram(second);
+    }
+
+    static long trigram(int first, int second, int third) {
+        return (bigram(first, second) << ID_BITS) | unigram(third);
+    }
+
+    public TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(long key, long count) {
+        int slot = slotOf(keys, key);
+        if (keys[slot] == EMPTY) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+                slot = slotOf(keys, key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        counts[slot] += count;
+    }
+
+    /**
+     * Adds the counts of {@code other}, which must use the same dictionary.
+     */
+    public void addAll(TermCounts other) {
+        if (other.dictionary != dictionary) {
+            throw new IllegalArgumentException("Term counts of different dictionaries cannot be merged");
+        }
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.keys[slot] != EMPTY) {
+                add(other.keys[slot], other.counts[slot]);
+            }
+        }
+    }
+
+    public long count(long key) {
+        int slot = slotOf(keys, key);
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new HashMap<>(size * 2);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                map.merge(term(keys[slot]), counts[slot], Long::sum);
+            }
+        }
+        return map;
+    }
+
+    private String term(long key) {
+        int first = (int) (key >>> 2 * ID_BITS);
+        int second = (int) (key >>> ID_BITS & ID_MASK);
+        String last = dictionary.term((int) (key & ID_MASK) - 1);
+        if (second == 0) {
+            return last;
+        }
+        String middle = dictionary.term(second - 1) + " " + last;
+        return first == 0 ? middle : dictionary.term(first - 1) + " " + middle;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                int newSlot = slotOf(keys, oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                counts[newSlot] = oldCounts[slot];
+            }
+        }
+    }
+
+    private static int slotOf(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,145 @@
+package com.redis.om.partthreetopk;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Interns terms to dense int IDs, so the hot path counts IDs instead of allocating a String per token and per
+ * bigram. The table is open addressing over primitive arrays (the ID and hash of every slot), the only object per
+ * entry is the term's String, created once when the term is first seen.
+ * <p>
+ * Known terms are looked up without locking (optimistic {@link StampedLock} read), new terms are added under the
+ * write lock. The dictionary holds at most {@code maxSize} terms; once full, {@link #intern} returns -1 and the
+ * caller moves on to a new dictionary, while IDs already handed out stay valid in this one.
+ */
+public class TermDictionary {
+
+    private static final int EMPTY = 0;
+
+    private final int maxSize;
+    private final StampedLock lock = new StampedLock();
+
+    // ID + 1 of the term in every slot, EMPTY for a free slot
+    private int[] slots;
+    private int[] slotHashes;
+    private String[] terms;
+    private int size;
+
+    public TermDictionary(int maxSize) {
+        this.maxSize = maxSize;
+        this.slots = new int[1024];
+        this.slotHashes = new int[1024];
+        this.terms = new String[512];
+    }
+
+    /**
+     * Returns the ID of {@code term}, adding it if needed, or -1 if it is new and the dictionary is full.
+     */
+    public int intern(CharSequence term) {
+        int hash = (int) Hashing.hash64(term);
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int id = find(slots, slotHashes, terms, term, hash);
+                if (id >= 0 && lock.validate(stamp)) {
+                    return id;
+                }
+            } catch (RuntimeException e) {
+                // Torn read while the table was being resized, retried under the lock
+            }
+        }
+
+        stamp = lock.writeLock();
+        try {
+            int id = find(slots, slotHashes, terms, term, hash);
+            if (id >= 0) {
+                return id;
+            }
+            if (size >= maxSize) {
+                return -1;
+            }
+            return add(term.toString(), hash);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public String term(int id) {
+        long stamp = lock.tryOptimisticRead();
+        String[] current = terms;
+        if (stamp != 0 && id < current.length) {
+            String term = current[id];
+            if (term != null && lock.validate(stamp)) {
+                return term;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return terms[id];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int find(int[] slots, int[] slotHashes, String[] terms, CharSequence term, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (slotHashes[slot] == hash && contentEquals(terms[slots[slot] - 1], term)) {
+                return slots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean contentEquals(String stored, CharSequence term) {
+        return stored.length() == term.length() && stored.contentEquals(term);
+    }
+
+    private int add(String term, int hash) {
+        // Keep the load factor at 1/2 so probe sequences stay short
+        if ((size + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        if (size == terms.length) {
+            terms = Arrays.copyOf(terms, terms.length * 2);
+        }
+
+        int id = size++;
+        terms[id] = term;
+        place(slots, slotHashes, id, hash);
+        return id;
+    }
+
+    private void resize(int capacity) {
+        int[] newSlots = new int[capacity];
+        int[] newHashes = new int[capacity];
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (slots[slot] != EMPTY) {
+                place(newSlots, newHashes, slots[slot] - 1, slotHashes[slot]);
+            }
+        }
+        slots = newSlots;
+        slotHashes = newHashes;
+    }
+
+    private static void place(int[] slots, int[] slotHashes, int id, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        slotHashes[slot] = hash;
+        slots[slot] = id + 1;
+    }
+}
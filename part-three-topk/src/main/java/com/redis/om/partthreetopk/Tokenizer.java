@@ -0,0 +1,176 @@
+package com.redis.om.partthreetopk;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass tokenizer for post text. It produces the same words as splitting on whitespace and
+ * cleaning every piece with the former regex pipeline: punctuation and symbols are stripped (a leading
+ * {@code #} is kept), pure-digit tokens are dropped and the result is lowercased and trimmed.
+ * <p>
+ * Tokens are written into a reused buffer and handed out as a reused {@link CharSequence} view, which is
+ * only valid during the callback. Instances are not thread-safe.
+ */
+public class Tokenizer {
+
+    @FunctionalInterface
+    public interface TokenConsumer {
+        void accept(CharSequence token);
+    }
+
+    // Locales with language-specific lowercasing rules, only handled by String.toLowerCase
+    private static final boolean SPECIAL_CASING_LOCALE =
+            Set.of("tr", "az", "lt").contains(Locale.getDefault().getLanguage());
+    private static final Pattern HASH_PUNCT_SYMBOL = Pattern.compile("(?<!^)#|[\\p{Punct}\\p{S}&&[^#]]");
+    private static final Pattern DIGITS_ONLY = Pattern.compile("^\\d+$");
+    private static final String ASCII_PUNCT = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+
+    private char[] buffer = new char[64];
+    private final TokenView view = new TokenView();
+
+    public void tokenize(CharSequence text, TokenConsumer consumer) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && isSeparator(text.charAt(i))) i++;
+            int start = i;
+            while (i < length && !isSeparator(text.charAt(i))) i++;
+            if (i > start) {
+                emit(text, start, i, consumer);
+            }
+        }
+    }
+
+    private void emit(CharSequence text, int start, int end, TokenConsumer consumer) {
+        if (buffer.length < end - start) {
+            buffer = new char[Math.max(end - start, buffer.length * 2)];
+        }
+
+        int length = 0;
+        for (int i = start; i < end; ) {
+            int codePoint = Character.codePointAt(text, i);
+            if (codePoint == '#') {
+                if (i == start) buffer[length++] = '#';
+            } else if (!isPunctOrSymbol(codePoint)) {
+                length += Character.toChars(codePoint, buffer, length);
+            }
+            i += Character.charCount(codePoint);
+        }
+
+        length = dropDigitsOnly(length);
+
+        // Lowercase only after stripping, surrogates separated by a removed symbol form a pair again
+        int written = 0;
+        for (int i = 0; i < length; ) {
+            int codePoint = Character.codePointAt(buffer, i, length);
+            if (needsStringLowerCase(codePoint)) {
+                emitSlow(text.subSequence(start, end).toString(), consumer);
+                return;
+            }
+            written += Character.toChars(Character.toLowerCase(codePoint), buffer, written);
+            i += Character.charCount(codePoint);
+        }
+        length = written;
+
+        int from = 0;
+        while (from < length && buffer[from] <= ' ') from++;
+        while (length > from && buffer[length - 1] <= ' ') length--;
+
+        if (length > from) {
+            view.set(buffer, from, length - from);
+            consumer.accept(view);
+        }
+    }
+
+    /**
+     * Mirrors {@code replaceAll("^\\d+$", "")}: a token made only of ASCII digits becomes empty,
+     * and since {@code $} also matches before a final line terminator, so does the digit run in front of one.
+     */
+    private int dropDigitsOnly(int length) {
+        int digitsEnd = length;
+        if (length > 1 && isLineTerminator(buffer[length - 1])) {
+            digitsEnd = length - 1;
+        }
+        if (digitsEnd == 0) {
+            return length;
+        }
+        for (int i = 0; i < digitsEnd; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') {
+                return length;
+            }
+        }
+        if (digitsEnd < length) {
+            buffer[0] = buffer[length - 1];
+            return 1;
+        }
+        return 0;
+    }
+
+    // Rare tokens whose lowercase form depends on context or locale go through the original regex pipeline
+    private void emitSlow(String word, TokenConsumer consumer) {
+        String cleaned = DIGITS_ONLY.matcher(HASH_PUNCT_SYMBOL.matcher(word).replaceAll(""))
+                .replaceAll("")
+                .toLowerCase()
+                .trim();
+        if (!cleaned.isEmpty()) {
+            consumer.accept(cleaned);
+        }
+    }
+
+    private static boolean needsStringLowerCase(int codePoint) {
+        return SPECIAL_CASING_LOCALE || codePoint == '\u0130' || codePoint == '\u03A3';
+    }
+
+    // Same characters as the former split("\\s+")
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isPunctOrSymbol(int codePoint) {
+        if (codePoint < 128) {
+            return ASCII_PUNCT.indexOf(codePoint) >= 0;
+        }
+        return switch (Character.getType(codePoint)) {
+            case Character.MATH_SYMBOL, Character.CURRENCY_SYMBOL,
+                 Character.MODIFIER_SYMBOL, Character.OTHER_SYMBOL -> true;
+            default -> false;
+        };
+    }
+
+    private static class TokenView implements CharSequence {
+        private char[] chars;
+        private int offset;
+        private int length;
+
+        void set(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.redis.om.partthreetopk;
+
+import jakarta.websocket.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Live Jetstream subscription over WebSocket. Reconnects with backoff and resumes from the checkpointed cursor.
+ */
+@Component
+@ClientEndpoint
+@ConditionalOnProperty(name = "jetstream.source", havingValue = "websocket", matchIfMissing = true)
+public class WebSocketEventSource implements EventSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketEventSource.class);
+
+    private final JetstreamCursor cursor;
+    private final URI endpointURI;
+
+    private Sink sink;
+    private Session session;
+    private boolean manuallyClosed = false;
+
+    public WebSocketEventSource(JetstreamCursor cursor,
+                                @Value("${jetstream.url:wss://jetstream2.us-east.bsky.network/subscribe?wantedCollections=app.bsky.feed.post}") String uri,
+                                @Value("${jetstream.compression.enabled:false}") boolean compressed) {
+        this.cursor = cursor;
+        // Jetstream sends zstd frames compressed with its shared dictionary when asked for compress=true
+        this.endpointURI = URI.create(compressed ? uri + (uri.contains("?") ? "&" : "?") + "compress=true" : uri);
+    }
+
+    @OnOpen
+    public void onOpen(Session session) {
+        logger.info("Connected to Bluesky stream");
+    }
+
+    @OnMessage
+    public void onMessage(String message) {
+        sink.onText(message);
+    }
+
+    @OnMessage
+    public void onMessage(byte[] frame) {
+        sink.onCompressed(frame);
+    }
+
+    @OnClose
+    public void onClose(Session session, CloseReason closeReason) {
+        logger.info("Disconnected: {}", closeReason);
+        if (!manuallyClosed) tryReconnect();
+    }
+
+    @OnError
+    public void onError(Session session, Throwable throwable) {
+        logger.error("WebSocket error: {}", throwable.getMessage());
+        if (!manuallyClosed) tryReconnect();
+    }
+
+    @Override
+    public void start(Sink sink) throws Exception {
+        this.sink = sink;
+        connect();
+    }
+
+    @Override
+    public void stop() throws IOException {
+        manuallyClosed = true;
+        if (session != null && session.isOpen()) {
+            session.close();
+        }
+    }
+
+    @Override
+    public boolean resumable() {
+        return true;
+    }
+
+    private void connect() throws Exception {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        // Resume from the last checkpoint so the events missed while disconnected are replayed
+        this.session = container.connectToServer(this, cursor.resumeFrom(endpointURI));
+    }
+
+    private void tryReconnect() {
+        new Thread(() -> {
+            int attempts = 0;
+            while (!manuallyClosed) {
+                try {
+                    Thread.sleep(backoffDelay(++attempts));
+                    logger.info("Trying to reconnect... attempt {}", attempts);
+                    connect();
+                    logger.info("Reconnected!");
+                    break;
+                } catch (Exception e) {
+                    logger.warn("Reconnect failed: {}", e.getMessage());
+                }
+            }
+        }).start();
+    }
+
+    private long backoffDelay(int attempts) {
+        return Math.min(30_000, 2000L * attempts); // max 30s
+    }
+}
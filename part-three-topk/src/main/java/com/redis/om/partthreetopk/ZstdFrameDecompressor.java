@@ -0,0 +1,50 @@
+package com.redis.om.partthreetopk;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+
+/**
+ * Decompresses zstd Jetstream frames into a reused buffer. The decompression context keeps the shared
+ * dictionary loaded, so a frame costs one native call and no allocation once the buffer has grown to the
+ * largest frame seen. Instances are not thread-safe; every worker keeps its own.
+ */
+public class ZstdFrameDecompressor {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final ZstdDecompressCtx context = new ZstdDecompressCtx();
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    public ZstdFrameDecompressor(ZstdDictDecompress dictionary) {
+        if (dictionary != null) {
+            context.loadDict(dictionary);
+        }
+    }
+
+    /**
+     * Decompresses {@code frame} and returns the number of bytes written to {@link #buffer()}.
+     */
+    public int decompress(byte[] frame) {
+        long contentSize = Zstd.getFrameContentSize(frame);
+        if (contentSize > buffer.length) {
+            buffer = new byte[(int) contentSize];
+        }
+        while (true) {
+            try {
+                return context.decompressByteArray(buffer, 0, buffer.length, frame, 0, frame.length);
+            } catch (ZstdException e) {
+                // The content size is optional in the frame header; grow until the frame fits
+                if (e.getErrorCode() != Zstd.errDstSizeTooSmall() || buffer.length >= Integer.MAX_VALUE / 2) {
+                    throw e;
+                }
+                buffer = new byte[buffer.length * 2];
+            }
+        }
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+}
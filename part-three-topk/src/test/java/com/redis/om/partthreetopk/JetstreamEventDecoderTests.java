@@ -0,0 +1,143 @@
+package com.redis.om.partthreetopk;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JetstreamEventDecoderTests {
+
+    private final JetstreamEventDecoder decoder = new JetstreamEventDecoder();
+
+    @Test
+    void decodesAPost() throws IOException {
+        String text = "Hi @alice.bsky.social";
+        Decoded decoded = decode("""
+                {"did":"did:plc:a","time_us":1700000000000000,"kind":"commit","commit":{"rev":"r","operation":"create",\
+                "collection":"app.bsky.feed.post","rkey":"3k","record":{"$type":"app.bsky.feed.post","langs":["en"],\
+                "text":"Hi @alice.bsky.social","facets":[{"index":{"byteStart":3,"byteEnd":21},\
+                "features":[{"$type":"app.bsky.richtext.facet#mention","did":"did:plc:b"}]},\
+                {"index":{"byteStart":0,"byteEnd":2},"features":[{"$type":"app.bsky.richtext.facet#link"}]}]}}}""");
+
+        assertEquals(List.of(new JetstreamEventDecoder.Post("did:plc:a", "3k", text, 1_700_000_000_000_000L,
+                List.of(new JetstreamEventDecoder.Mention(3, 21)))), decoded.posts());
+        assertEquals("at://did:plc:a/app.bsky.feed.post/3k", decoded.posts().get(0).uri());
+        assertTrue(decoded.rejections().isEmpty());
+    }
+
+    @Test
+    void rejectsEventsThatAreNotCommits() throws IOException {
+        assertRejected(JetstreamEventDecoder.Rejection.NOT_COMMIT, """
+                {"did":"did:plc:a","time_us":1,"kind":"identity","identity":{"handle":"a.bsky.social"}}""");
+        assertRejected(JetstreamEventDecoder.Rejection.NOT_COMMIT, """
+                {"did":"did:plc:a","time_us":1,"kind":"commit","commit":null}""");
+        assertRejected(JetstreamEventDecoder.Rejection.NOT_COMMIT, """
+                {"did":"did:plc:a","time_us":1}""");
+    }
+
+    @Test
+    void rejectsCommitsWithoutARecord() throws IOException {
+        // A delete carries no record
+        assertRejected(JetstreamEventDecoder.Rejection.NO_RECORD, """
+                {"did":"did:plc:a","time_us":1,"kind":"commit","commit":{"operation":"delete","rkey":"3k"}}""");
+        assertRejected(JetstreamEventDecoder.Rejection.NO_RECORD, """
+                {"did":"did:plc:a","time_us":1,"kind":"commit","commit":{"rkey":"3k","record":"none"}}""");
+    }
+
+    @Test
+    void rejectsRecordsWithoutText() throws IOException {
+        assertRejected(JetstreamEventDecoder.Rejection.NO_TEXT, """
+                {"did":"did:plc:a","time_us":1,"kind":"commit","commit":{"rkey":"3k",\
+                "record":{"$type":"app.bsky.feed.like","langs":["en"],"subject":{"uri":"at://x"}}}}""");
+    }
+
+    @Test
+    void rejectsPostsThatAreNotInEnglish() throws IOException {
+        assertRejected(JetstreamEventDecoder.Rejection.NOT_ENGLISH, """
+                {"did":"did:plc:a","time_us":1,"kind":"commit","commit":{"rkey":"3k",\
+                "record":{"langs":["de","fr"],"text":"Guten Tag"}}}""");
+    }
+
+    @Test
+    void readsFieldsInAnyOrder() throws IOException {
+        // langs after text, kind and did after commit
+        Decoded english = decode("""
+                {"time_us":2,"commit":{"record":{"text":"hello","langs":["ja","en"]},"rkey":"3k"},"kind":"commit",\
+                "did":"did:plc:a"}""");
+        Decoded german = decode("""
+                {"time_us":2,"commit":{"record":{"text":"hallo","langs":["de"]},"rkey":"3k"},"kind":"commit",\
+                "did":"did:plc:a"}""");
+        Decoded identity = decode("""
+                {"time_us":2,"commit":{"record":{"text":"hello","langs":["en"]},"rkey":"3k"},"kind":"identity"}""");
+
+        assertEquals(List.of(new JetstreamEventDecoder.Post("did:plc:a", "3k", "hello", 2, List.of())),
+                english.posts());
+        assertEquals(List.of(JetstreamEventDecoder.Rejection.NOT_ENGLISH), german.rejections());
+        assertEquals(List.of(JetstreamEventDecoder.Rejection.NOT_COMMIT), identity.rejections());
+        assertTrue(german.posts().isEmpty());
+        assertTrue(identity.posts().isEmpty());
+    }
+
+    @Test
+    void decodesEveryEventOfAFrame() throws IOException {
+        String frame = String.join("\n",
+                post("3a", "first post"),
+                """
+                {"did":"did:plc:a","time_us":1,"kind":"account","account":{"active":true}}""",
+                post("3b", "second post"),
+                """
+                {"did":"did:plc:a","time_us":1,"kind":"commit","commit":{"rkey":"3c","record":{"langs":["es"],"text":"hola"}}}""",
+                post("3d", "third post"));
+        List<JetstreamEventDecoder.Post> posts = new ArrayList<>();
+        List<JetstreamEventDecoder.Rejection> rejections = new ArrayList<>();
+        byte[] bytes = ("padding" + frame).getBytes(StandardCharsets.UTF_8);
+
+        decoder.decode(bytes, "padding".length(), bytes.length - "padding".length(), posts::add, rejections::add);
+
+        assertEquals(List.of("3a", "3b", "3d"), posts.stream().map(JetstreamEventDecoder.Post::rkey).toList());
+        assertEquals(List.of("first post", "second post", "third post"),
+                posts.stream().map(JetstreamEventDecoder.Post::text).toList());
+        assertEquals(List.of(JetstreamEventDecoder.Rejection.NOT_COMMIT, JetstreamEventDecoder.Rejection.NOT_ENGLISH),
+                rejections);
+        assertEquals(decode(frame).posts(), posts);
+    }
+
+    @Test
+    void failsOnATruncatedFrame() {
+        // The event is rejected at kind, the rest of it is skipped and the frame ends inside it
+        List<JetstreamEventDecoder.Post> posts = new ArrayList<>();
+        String frame = post("3a", "complete") + "\n"
+                + "{\"did\":\"did:plc:a\",\"kind\":\"identity\",\"identity\":{\"handle\":\"a.bsky";
+
+        assertThrows(IOException.class, () -> decoder.decode(frame, posts::add));
+        assertEquals(List.of("3a"), posts.stream().map(JetstreamEventDecoder.Post::rkey).toList());
+    }
+
+    private void assertRejected(JetstreamEventDecoder.Rejection rejection, String frame) throws IOException {
+        Decoded decoded = decode(frame);
+
+        assertTrue(decoded.posts().isEmpty(), () -> "Decoded a post from: " + frame);
+        assertEquals(List.of(rejection), decoded.rejections(), () -> "Rejections of: " + frame);
+    }
+
+    private Decoded decode(String frame) throws IOException {
+        Decoded decoded = new Decoded(new ArrayList<>(), new ArrayList<>());
+        decoder.decode(frame, decoded.posts()::add, decoded.rejections()::add);
+        return decoded;
+    }
+
+    private static String post(String rkey, String text) {
+        return """
+                {"did":"did:plc:a","time_us":1,"kind":"commit","commit":{"rkey":"%s","record":{"langs":["en"],"text":"%s"}}}"""
+                .formatted(rkey, text);
+    }
+
+    private record Decoded(List<JetstreamEventDecoder.Post> posts, List<JetstreamEventDecoder.Rejection> rejections) {
+    }
+}
@@ -0,0 +1,69 @@
+package com.redis.om.partthreetopk;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NgramExtractorTests {
+
+    private static final StopwordFilter stopwordFilter =
+            new StopwordFilter(new DefaultResourceLoader(), null, null, false);
+
+    @Test
+    void countsEveryBigramOnce() {
+        Map<String, Long> counts = extract(2, false, false, "Redis streams rock", List.of());
+
+        assertEquals(Map.of("redis", 1L, "streams", 1L, "rock", 1L,
+                "redis streams", 1L, "streams rock", 1L), counts);
+    }
+
+    @Test
+    void countsTrigrams() {
+        Map<String, Long> counts = extract(3, false, false, "Redis streams rock hard", List.of());
+
+        assertEquals(1L, counts.get("redis streams rock"));
+        assertEquals(1L, counts.get("streams rock hard"));
+        assertEquals(9, counts.size());
+    }
+
+    @Test
+    void countsOnlyHashtags() {
+        Map<String, Long> counts = extract(2, true, false, "#redis #bluesky trending with #java", List.of());
+
+        assertEquals(Map.of("#redis", 1L, "#bluesky", 1L, "#java", 1L, "#redis #bluesky", 1L), counts);
+    }
+
+    @Test
+    void breaksRunsAtMentions() {
+        String text = "Café redis @alice.bsky.social streams";
+        int start = text.substring(0, text.indexOf('@')).getBytes(StandardCharsets.UTF_8).length;
+        int end = start + "@alice.bsky.social".length();
+        List<JetstreamEventDecoder.Mention> mentions = List.of(new JetstreamEventDecoder.Mention(start, end));
+
+        assertEquals(Map.of("café", 1L, "redis", 1L, "streams", 1L, "café redis", 1L),
+                extract(2, false, false, text, mentions));
+        assertEquals(Map.of("café", 1L, "redis", 1L, "streams", 1L, "café redis", 1L, "@alice.bsky.social", 1L),
+                extract(2, false, true, text, mentions));
+    }
+
+    @Test
+    void returnsNullWhenTheDictionaryIsFull() {
+        NgramExtractor extractor = new NgramExtractor(stopwordFilter, 2, false, false, new SimpleMeterRegistry());
+
+        assertNull(extractor.extract("redis streams rock", List.of(), new TermDictionary(2)));
+    }
+
+    private static Map<String, Long> extract(int maxN, boolean hashtagsOnly, boolean countMentions, String text,
+                                             List<JetstreamEventDecoder.Mention> mentions) {
+        NgramExtractor extractor = new NgramExtractor(stopwordFilter, maxN, hashtagsOnly, countMentions,
+                new SimpleMeterRegistry());
+        return extractor.extract(text, mentions, new TermDictionary(100)).toMap();
+    }
+}
@@ -0,0 +1,134 @@
+package com.redis.om.partthreetopk;
+
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.args.Rawable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * {@link RedisService} without a server: pipelines run against a real Jedis {@link Pipeline} whose connection
+ * records every command instead of sending it. Replies are empty, keys never exist and every deduplicated item is new.
+ * A script is recorded as a pipeline of its one EVAL. Each pipeline takes {@code pipelineMillis}, standing in for the
+ * round trip.
+ */
+class RecordingRedisService extends RedisService {
+
+    private final List<List<List<String>>> pipelines = Collections.synchronizedList(new ArrayList<>());
+    private final long pipelineMillis;
+
+    RecordingRedisService(long pipelineMillis) {
+        super(null, null, null, null);
+        this.pipelineMillis = pipelineMillis;
+    }
+
+    /**
+     * The commands of every pipeline so far, in the order they were synced; a command is its name and arguments.
+     */
+    List<List<List<String>>> pipelines() {
+        synchronized (pipelines) {
+            return List.copyOf(pipelines);
+        }
+    }
+
+    @Override
+    public void pipelined(Consumer<Pipeline> commands) {
+        RecordingConnection connection = new RecordingConnection();
+        try (Pipeline pipeline = new Pipeline(connection)) {
+            commands.accept(pipeline);
+            pipeline.sync();
+        }
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pipelineMillis));
+        pipelines.add(connection.commands);
+    }
+
+    @Override
+    public Object eval(String script, List<String> keys, List<String> args) {
+        List<String> command = new ArrayList<>(List.of("EVAL", script, Integer.toString(keys.size())));
+        command.addAll(keys);
+        command.addAll(args);
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pipelineMillis));
+        pipelines.add(List.of(command));
+        return 1L;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return false;
+    }
+
+    @Override
+    public void expire(String key, long ttlSeconds) {
+    }
+
+    @Override
+    public String get(String key) {
+        return null;
+    }
+
+    @Override
+    public void set(String key, String value) {
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, long ttlSeconds) {
+        return true;
+    }
+
+    @Override
+    public void delete(String key) {
+    }
+
+    @Override
+    public Set<String> sUnion(String... keys) {
+        return Set.of();
+    }
+
+    @Override
+    public void createCms(String key, int width, int depth) {
+    }
+
+    @Override
+    public void createCms(String key, int width, int depth, long ttlSeconds) {
+    }
+
+    @Override
+    public void createBloomFilter(String key, int expectedItems, double falsePositiveRate) {
+    }
+
+    @Override
+    public List<Boolean> addNewToBloomFilter(String bloomKey, String setKey, String counterKey,
+                                             List<String> olderBloomKeys, long ttlSeconds, List<String> items) {
+        return Collections.nCopies(items.size(), true);
+    }
+
+    private static class RecordingConnection extends Connection {
+        private final List<List<String>> commands = new ArrayList<>();
+
+        @Override
+        public void sendCommand(CommandArguments args) {
+            List<String> command = new ArrayList<>();
+            for (Rawable arg : args) {
+                command.add(new String(arg.getRaw(), StandardCharsets.UTF_8));
+            }
+            commands.add(command);
+        }
+
+        @Override
+        public List<Object> getMany(int count) {
+            return Collections.nCopies(count, null);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
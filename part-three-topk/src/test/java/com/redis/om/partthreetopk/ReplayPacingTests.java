@@ -0,0 +1,130 @@
+package com.redis.om.partthreetopk;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayPacingTests {
+
+    // 2025-01-01T09:59:58Z, three seconds of posts across the 10:00 minute boundary
+    private static final long START_US = 1_735_725_598_000_000L;
+    private static final int EVENTS = 310;
+    private static final long EVENT_SPACING_US = 10_000;
+    private static final String[] WORDS = {
+            "redis", "bluesky", "sketch", "stream", "bloom", "filter", "window", "spike", "replay", "minute"
+    };
+
+    private static final StopwordFilter stopwordFilter =
+            new StopwordFilter(new DefaultResourceLoader(), null, null, false);
+
+    @Test
+    void maxSpeedReplayClosesTheSameMinutesAsRealTime(@TempDir Path directory) throws Exception {
+        Path capture = directory.resolve("capture.jsonl");
+        Files.write(capture, capture());
+
+        Map<String, List<Map<String, String>>> realTime = minuteWrites(replay(capture, 1.0));
+        Map<String, List<Map<String, String>>> maxSpeed = minuteWrites(replay(capture, 0));
+
+        // Each minute is written once, when it closes, with all of its posts
+        assertEquals(2, realTime.size());
+        realTime.values().forEach(writes -> assertEquals(1, writes.size()));
+        assertEquals(realTime, maxSpeed);
+    }
+
+    private static RecordingRedisService replay(Path capture, double speed) throws Exception {
+        // A slow Redis lets posts pile up in the batch queue while the replay runs ahead
+        RecordingRedisService redisService = new RecordingRedisService(20);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        KeyRegistry keyRegistry = new KeyRegistry(redisService, 7_200);
+        EventClock eventClock = new EventClock(1);
+        HeavyHitterTracker heavyHitterTracker =
+                new HeavyHitterTracker(redisService, keyRegistry, eventClock, 5_000, 1_000, meterRegistry);
+        MetricsBatcher metricsBatcher = new MetricsBatcher(redisService,
+                new LocalCmsAggregator(redisService, keyRegistry, eventClock, false, 5_000, 1_000, 5, meterRegistry),
+                heavyHitterTracker, keyRegistry, new SlidingWindow(10, 60, 30, 180, 120), eventClock, 100, 10_000,
+                86_400, meterRegistry);
+        JetstreamProcessor processor = new JetstreamProcessor(
+                new NgramExtractor(stopwordFilter, 1, false, false, meterRegistry), metricsBatcher, 1_000_000,
+                meterRegistry);
+        JetstreamClient client = new JetstreamClient(new FileReplayEventSource(capture, speed),
+                new DeduplicationService(redisService, keyRegistry, 100_000, 300, 3_600, 3, 100_000, meterRegistry),
+                processor, new MessageDispatcher(10_000, 8, MessageDispatcher.OverflowPolicy.BLOCK, 10_000, meterRegistry),
+                new JetstreamCursor(redisService, 5, 600), eventClock, new DefaultResourceLoader(), meterRegistry,
+                false, "");
+
+        // Stands in for the scheduler: minutes are closed as soon as the watermark passes them
+        Thread scheduler = Thread.ofPlatform().start(() -> {
+            for (long tick = 1; !Thread.currentThread().isInterrupted(); tick++) {
+                heavyHitterTracker.flush();
+                if (tick % 100 == 0) {
+                    metricsBatcher.flush();
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        });
+
+        client.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (meterRegistry.counter("jetstream.frames").count() < EVENTS) {
+            assertTrue(System.nanoTime() < deadline, "Replay did not finish");
+            Thread.sleep(10);
+        }
+        client.stop();
+        scheduler.interrupt();
+        scheduler.join();
+        metricsBatcher.close();
+        heavyHitterTracker.close();
+        return redisService;
+    }
+
+    // Counts written by each heavy hitter write, by minute ZSET
+    private static Map<String, List<Map<String, String>>> minuteWrites(RecordingRedisService redisService) {
+        Map<String, List<Map<String, String>>> writes = new HashMap<>();
+        for (List<List<String>> pipeline : redisService.pipelines()) {
+            for (List<String> command : pipeline) {
+                // EVAL script numkeys marker zset error open, then ttl and top K, then term, count, error triples
+                if (!command.get(0).equals("EVAL") || !command.get(4).startsWith("words-bucket-zset:")) {
+                    continue;
+                }
+                Map<String, String> counts = new HashMap<>();
+                for (int i = 9; i < command.size(); i += 3) {
+                    counts.put(command.get(i), command.get(i + 1));
+                }
+                writes.computeIfAbsent(command.get(4), key -> new ArrayList<>()).add(counts);
+            }
+        }
+        return writes;
+    }
+
+    private static List<String> capture() {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int word = 2 + random.nextInt(4); word > 0; word--) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            lines.add("""
+                    {"did":"did:plc:replay","time_us":%d,"kind":"commit","commit":{"rev":"r","operation":"create",\
+                    "collection":"app.bsky.feed.post","rkey":"post%d","record":{"$type":"app.bsky.feed.post",\
+                    "createdAt":"2025-01-01T00:00:00.000Z","langs":["en"],"text":"%s","facets":[]}}}"""
+                    .formatted(START_US + i * EVENT_SPACING_US, i, text.toString().strip()));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,61 @@
+package com.redis.om.partthreetopk;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingWindowTests {
+
+    private final SlidingWindow window = new SlidingWindow(10, 60, 30, 180, 120);
+
+    @Test
+    void slotsStartAtTheNewestSlotAndGoBack() {
+        long end = millis("2025-01-01T10:01:10Z");
+        List<Long> slots = window.slots(end);
+
+        assertEquals(24, slots.size());
+        assertEquals(millis("2025-01-01T10:01:00Z"), slots.get(0));
+        assertEquals(millis("2025-01-01T09:57:10Z"), slots.get(23));
+        assertEquals("words-slot-cms:1735725660", window.slotKey(slots.get(0)));
+    }
+
+    @Test
+    void steadyTermDoesNotSpike() {
+        // 1 per second all along, across a minute boundary
+        List<List<Long>> counts = new ArrayList<>();
+        for (int slot = 0; slot < window.slotCount(); slot++) {
+            counts.add(List.of(10L));
+        }
+
+        Map<String, Double> spikeScores = new HashMap<>();
+        SpikeDetector.score(new String[]{"steady"}, counts, window, spikeScores, new HashMap<>());
+
+        assertEquals(0, spikeScores.get("steady"), 1e-9);
+    }
+
+    @Test
+    void burstInRecentWindowSpikes() {
+        List<List<Long>> counts = new ArrayList<>();
+        for (int slot = 0; slot < window.slotCount(); slot++) {
+            counts.add(List.of(slot < window.recentSlotCount() ? 50L : 10L));
+        }
+
+        Map<String, Double> spikeScores = new HashMap<>();
+        Map<String, Long> topKIncrements = new HashMap<>();
+        SpikeDetector.score(new String[]{"burst"}, counts, window, spikeScores, topKIncrements);
+
+        assertEquals(4, spikeScores.get("burst"), 0.01);
+        assertTrue(topKIncrements.containsKey("burst"));
+    }
+
+    private static long millis(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+}
@@ -0,0 +1,52 @@
+package com.redis.om.partthreetopk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTests {
+
+    @Test
+    void countsExactlyWhileBelowCapacity() {
+        SpaceSaving summary = new SpaceSaving(10);
+        summary.add("a", 3);
+        summary.add("b", 1);
+        summary.add("a", 2);
+
+        assertEquals(List.of(new SpaceSaving.Counter("a", 5, 0), new SpaceSaving.Counter("b", 1, 0)), summary.top(10));
+    }
+
+    @Test
+    void keepsHeavyHittersWithinErrorBound() {
+        int capacity = 100;
+        SpaceSaving summary = new SpaceSaving(capacity);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Zipf-like: a few frequent terms, a long tail of rare ones
+            String term = "term-" + (int) (1000.0 / (1 + random.nextInt(1000)));
+            summary.add(term, 1);
+            exact.merge(term, 1L, Long::sum);
+        }
+
+        long bound = summary.total() / capacity;
+        List<SpaceSaving.Counter> top = summary.top(capacity);
+        for (SpaceSaving.Counter counter : top) {
+            long trueCount = exact.get(counter.term());
+            assertTrue(counter.count() >= trueCount);
+            assertTrue(counter.count() - counter.error() <= trueCount);
+            assertTrue(counter.error() <= bound);
+        }
+        exact.forEach((term, count) -> {
+            if (count > bound) {
+                assertTrue(top.stream().anyMatch(counter -> counter.term().equals(term)), term);
+            }
+        });
+    }
+}
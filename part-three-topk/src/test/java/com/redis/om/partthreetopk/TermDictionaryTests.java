@@ -0,0 +1,50 @@
+package com.redis.om.partthreetopk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TermDictionaryTests {
+
+    @Test
+    void internsTermsToStableIds() {
+        TermDictionary dictionary = new TermDictionary(1_000_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, dictionary.intern(new StringBuilder("term-").append(i)));
+        }
+
+        assertEquals(42, dictionary.intern("term-42"));
+        assertEquals("term-9999", dictionary.term(9999));
+        assertEquals(10_000, dictionary.size());
+    }
+
+    @Test
+    void refusesNewTermsOnceFull() {
+        TermDictionary dictionary = new TermDictionary(2);
+
+        assertEquals(0, dictionary.intern("a"));
+        assertEquals(1, dictionary.intern("b"));
+        assertEquals(-1, dictionary.intern("c"));
+        assertEquals(0, dictionary.intern("a"));
+    }
+
+    @Test
+    void materializesUnigramsAndBigrams() {
+        TermDictionary dictionary = new TermDictionary(100);
+        int hello = dictionary.intern("hello");
+        int world = dictionary.intern("world");
+
+        TermCounts counts = new TermCounts(dictionary);
+        counts.add(TermCounts.unigram(hello), 2);
+        counts.add(TermCounts.unigram(world), 1);
+        counts.add(TermCounts.bigram(hello, world), 1);
+        counts.add(TermCounts.bigram(world, hello), 1);
+        TermCounts merged = new TermCounts(dictionary);
+        merged.addAll(counts);
+        merged.addAll(counts);
+
+        assertEquals(Map.of("hello", 4L, "world", 2L, "hello world", 2L, "world hello", 2L), merged.toMap());
+    }
+}
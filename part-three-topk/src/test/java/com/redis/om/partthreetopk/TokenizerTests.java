@@ -0,0 +1,76 @@
+package com.redis.om.partthreetopk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenizerTests {
+
+    private final Tokenizer tokenizer = new Tokenizer();
+
+    @Test
+    void matchesRegexPipelineOnSamples() {
+        List<String> samples = List.of(
+                "",
+                "   ",
+                "Hello, World!",
+                "  leading and trailing  ",
+                "#Bluesky is #GREAT#again #",
+                "I've got 99 problems but 2024's fine",
+                "price: $100 (50% off) -> 50",
+                "emoji 😀👍 test 🚀rocket",
+                "tabs\tand\nnew\r\nlines\u000Band\fform feeds",
+                "non breaking space",
+                "Ünïcödé ÀÉÎ Straße",
+                "İstanbul ΣΟΦΊΑ ΟΔΟΣ",
+                "123  456  \u0085",
+                "\u0001control\u001F chars\u007F",
+                "email@example.com https://bsky.app/profile/x.y",
+                "𐐀DESERET 𐐀",
+                "\uD801)\uDC00 lone\uD800 surrogates\uDC00"
+        );
+
+        for (String sample : samples) {
+            assertEquals(regexPipeline(sample), tokenize(sample), () -> "Mismatch for: " + sample);
+        }
+    }
+
+    @Test
+    void matchesRegexPipelineOnRandomText() {
+        String alphabet = "aZk #9 0\t\n\u000B\f\r.,!@$%^&*()_-+=~`'\"?/\\|{}[]<>:;   \u0085"
+                + "\u0001\u001F\u007FİΣσÉéÀ€£©™—“´ˆ٠０K😀𐐀\uD800";
+        Random random = new Random(42);
+
+        for (int n = 0; n < 50_000; n++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(24);
+            for (int i = 0; i < length; i++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String sample = text.toString();
+            assertEquals(regexPipeline(sample), tokenize(sample), () -> "Mismatch for: " + sample);
+        }
+    }
+
+    private List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenizer.tokenize(text, token -> tokens.add(token.toString()));
+        return tokens;
+    }
+
+    // The cleaning pipeline JetstreamProcessor used before the tokenizer, kept as the golden reference
+    private static List<String> regexPipeline(String text) {
+        return Arrays.stream(text.split("\\s+"))
+                .map(word -> word.replaceAll("(?<!^)#|[\\p{Punct}\\p{S}&&[^#]]", "")
+                        .replaceAll("^\\d+$", "")
+                        .toLowerCase()
+                        .trim())
+                .filter(w -> !w.isEmpty())
+                .toList();
+    }
+}
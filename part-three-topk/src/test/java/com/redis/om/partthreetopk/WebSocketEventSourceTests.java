@@ -0,0 +1,170 @@
+package com.redis.om.partthreetopk;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebSocketEventSourceTests {
+
+    // Raw-content dictionary standing in for Jetstream's trained one
+    private static final byte[] DICTIONARY = """
+            {"did":"did:plc:dictionary","time_us":0,"kind":"commit","commit":{"rkey":"dict",\
+            "record":{"langs":["en"],"text":"dictionary text"}}}""".getBytes(StandardCharsets.UTF_8);
+    private static final String EVENT = """
+            {"did":"did:plc:a","time_us":1700000000000000,"kind":"commit","commit":{"rkey":"3k",\
+            "record":{"langs":["en"],"text":"hello over the wire"}}}""";
+
+    @Test
+    void receivesCompressedFramesFromTheServer() throws Exception {
+        byte[] compressed = compress(EVENT);
+        // Large enough to need the 16-bit frame length
+        String text = EVENT.repeat(10);
+
+        try (JetstreamServer server = new JetstreamServer(compressed, text)) {
+            RecordingSink sink = new RecordingSink();
+            WebSocketEventSource source = new WebSocketEventSource(
+                    new JetstreamCursor(new RecordingRedisService(0), 5, 600), server.uri(), true);
+
+            source.start(sink);
+            byte[] received = sink.compressed.poll(10, TimeUnit.SECONDS);
+            String receivedText = sink.texts.poll(10, TimeUnit.SECONDS);
+            source.stop();
+
+            assertTrue(server.requestLine.get(10, TimeUnit.SECONDS).contains("?wantedCollections=app.bsky.feed.post&compress=true"));
+            assertArrayEquals(compressed, received);
+            assertEquals(text, receivedText);
+
+            ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor(new ZstdDictDecompress(DICTIONARY));
+            List<JetstreamEventDecoder.Post> posts = new ArrayList<>();
+            int length = decompressor.decompress(received);
+            new JetstreamEventDecoder().decode(decompressor.buffer(), 0, length, posts::add);
+            assertEquals(List.of(new JetstreamEventDecoder.Post("did:plc:a", "3k", "hello over the wire",
+                    1_700_000_000_000_000L, List.of())), posts);
+        }
+    }
+
+    private static byte[] compress(String frame) {
+        try (ZstdCompressCtx context = new ZstdCompressCtx()) {
+            context.loadDict(DICTIONARY);
+            return context.compress(frame.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static class RecordingSink implements EventSource.Sink {
+        final BlockingQueue<byte[]> compressed = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> texts = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onText(String frame) {
+            texts.add(frame);
+        }
+
+        @Override
+        public void onCompressed(byte[] frame) {
+            compressed.add(frame);
+        }
+    }
+
+    /**
+     * Accepts one WebSocket connection, sends a binary and a text frame, then answers the client's close frame.
+     * Just enough of RFC 6455 for the client under test; no extensions are negotiated.
+     */
+    private static class JetstreamServer implements AutoCloseable {
+        private static final String HANDSHAKE_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+        final CompletableFuture<String> requestLine = new CompletableFuture<>();
+        private final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        private final Thread thread;
+
+        JetstreamServer(byte[] binary, String text) throws IOException {
+            this.thread = Thread.ofPlatform().start(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    handshake(socket);
+                    OutputStream out = socket.getOutputStream();
+                    writeFrame(out, 0x2, binary);
+                    writeFrame(out, 0x1, text.getBytes(StandardCharsets.UTF_8));
+                    awaitClose(new DataInputStream(socket.getInputStream()));
+                    writeFrame(out, 0x8, new byte[0]);
+                } catch (Exception e) {
+                    requestLine.completeExceptionally(e);
+                }
+            });
+        }
+
+        String uri() {
+            return "ws://localhost:" + serverSocket.getLocalPort() + "/subscribe?wantedCollections=app.bsky.feed.post";
+        }
+
+        private void handshake(Socket socket) throws Exception {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            requestLine.complete(reader.readLine());
+            String key = null;
+            for (String header = reader.readLine(); header != null && !header.isEmpty(); header = reader.readLine()) {
+                if (header.toLowerCase().startsWith("sec-websocket-key:")) {
+                    key = header.substring(header.indexOf(':') + 1).trim();
+                }
+            }
+            String accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                    .digest((key + HANDSHAKE_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+            socket.getOutputStream().write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\nSec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        // Server frames are sent unmasked, in a single fragment
+        private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length & 0xFF);
+            }
+            out.write(payload);
+            out.flush();
+        }
+
+        // Client frames are masked; only their opcode matters here
+        private static void awaitClose(DataInputStream in) throws IOException {
+            int opcode;
+            do {
+                opcode = in.readUnsignedByte() & 0x0F;
+                long length = in.readUnsignedByte() & 0x7F;
+                if (length == 126) {
+                    length = in.readUnsignedShort();
+                } else if (length == 127) {
+                    length = in.readLong();
+                }
+                in.skipNBytes(4 + length);
+            } while (opcode != 0x8);
+        }
+
+        @Override
+        public void close() throws Exception {
+            serverSocket.close();
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+}
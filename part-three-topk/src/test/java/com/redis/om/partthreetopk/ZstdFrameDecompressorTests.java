@@ -0,0 +1,85 @@
+package com.redis.om.partthreetopk;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ZstdFrameDecompressorTests {
+
+    // Raw-content dictionary standing in for Jetstream's trained one
+    private static final byte[] DICTIONARY = event("did:plc:dictionary", "dict", "dictionary text", 0)
+            .getBytes(StandardCharsets.UTF_8);
+
+    // A mention of "@alice.test" and a tag facet, which is not a mention
+    private static final String MENTION_AND_TAG_FACETS = """
+            [{"index":{"byteStart":3,"byteEnd":14},"features":[{"$type":"app.bsky.richtext.facet#mention",\
+            "did":"did:plc:alice"}]},{"index":{"byteStart":15,"byteEnd":19},\
+            "features":[{"$type":"app.bsky.richtext.facet#tag","tag":"tag"}]}]""";
+
+    private final JetstreamEventDecoder decoder = new JetstreamEventDecoder();
+
+    @Test
+    void decodesCompressedFrame() throws Exception {
+        String frame = event("did:plc:a", "1", "hello compressed world", 1_700_000_000_000_000L) + "\n"
+                + event("did:plc:b", "2", "hi @alice.test #tag", 1_700_000_000_000_001L, MENTION_AND_TAG_FACETS);
+
+        List<JetstreamEventDecoder.Post> posts = decompressAndDecode(new ZstdFrameDecompressor(dictionary()),
+                compress(frame, true));
+
+        assertEquals(List.of(
+                new JetstreamEventDecoder.Post("did:plc:a", "1", "hello compressed world", 1_700_000_000_000_000L,
+                        List.of()),
+                new JetstreamEventDecoder.Post("did:plc:b", "2", "hi @alice.test #tag", 1_700_000_000_000_001L,
+                        List.of(new JetstreamEventDecoder.Mention(3, 14)))
+        ), posts);
+    }
+
+    @Test
+    void growsBufferWhenContentSizeIsUnknown() throws Exception {
+        String text = "word ".repeat(50_000);
+        ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor(dictionary());
+
+        List<JetstreamEventDecoder.Post> small = decompressAndDecode(decompressor, compress(event("did:plc:a", "1", "short", 1), false));
+        List<JetstreamEventDecoder.Post> large = decompressAndDecode(decompressor, compress(event("did:plc:a", "2", text, 2), false));
+
+        assertEquals("short", small.get(0).text());
+        assertEquals(text, large.get(0).text());
+    }
+
+    private List<JetstreamEventDecoder.Post> decompressAndDecode(ZstdFrameDecompressor decompressor, byte[] frame) throws Exception {
+        List<JetstreamEventDecoder.Post> posts = new ArrayList<>();
+        int length = decompressor.decompress(frame);
+        decoder.decode(decompressor.buffer(), 0, length, posts::add);
+        return posts;
+    }
+
+    private static byte[] compress(String frame, boolean withContentSize) {
+        try (ZstdCompressCtx context = new ZstdCompressCtx()) {
+            context.loadDict(DICTIONARY);
+            context.setContentSize(withContentSize);
+            return context.compress(frame.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static ZstdDictDecompress dictionary() {
+        return new ZstdDictDecompress(DICTIONARY);
+    }
+
+    private static String event(String did, String rkey, String text, long timeUs) {
+        return event(did, rkey, text, timeUs, "[]");
+    }
+
+    private static String event(String did, String rkey, String text, long timeUs, String facets) {
+        return """
+                {"did":"%s","time_us":%d,"kind":"commit","commit":{"rev":"r","operation":"create",\
+                "collection":"app.bsky.feed.post","rkey":"%s","record":{"$type":"app.bsky.feed.post",\
+                "createdAt":"2025-01-01T00:00:00.000Z","langs":["en"],"text":"%s","facets":%s}}}"""
+                .formatted(did, timeUs, rkey, text, facets);
+    }
+}